@@ -710,6 +710,7 @@ public class GameMenu implements MenuCallback, View.OnClickListener {
             if (log.contains("version string:") || log.contains("OR:") || log.contains("ERROR:") || log.contains("INTERNAL ERROR:")) {
                 return;
             }
+            log = Logging.filterForbiddenToken(log);
             logWindow.appendLog(log);
             if (BuildConfig.DEBUG) {
                 Log.d("FCL Debug", log);
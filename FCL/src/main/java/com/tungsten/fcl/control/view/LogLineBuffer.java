@@ -0,0 +1,125 @@
+package com.tungsten.fcl.control.view;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lines shown by {@link LogWindow}.
+ *
+ * Text can be appended from any thread. Complete lines are kept in a bounded ring, dropping the oldest
+ * ones when it is full. Appending never touches the UI; it only requests a refresh through the given
+ * scheduler, and at most one refresh is pending at a time, so a burst of output is shown in one go.
+ * This class does not depend on Android.
+ */
+public final class LogLineBuffer {
+
+    private final String[] lines;
+    private final StringBuilder partial = new StringBuilder();
+    // Absolute indices of the oldest kept line and of the line after the newest complete one
+    private long start = 0;
+    private long end = 0;
+
+    private final Executor refreshScheduler;
+    private final Runnable refresh;
+    private final AtomicBoolean refreshPending = new AtomicBoolean(false);
+
+    /**
+     * @param capacity         maximum number of lines kept
+     * @param refreshScheduler runs the refresh later, e.g. on the next frame
+     * @param refresh          called by the scheduler after lines changed
+     */
+    public LogLineBuffer(int capacity, Executor refreshScheduler, Runnable refresh) {
+        this.lines = new String[capacity];
+        this.refreshScheduler = refreshScheduler;
+        this.refresh = refresh;
+    }
+
+    public void append(String text) {
+        synchronized (this) {
+            int from = 0;
+            int newline;
+            while ((newline = text.indexOf('\n', from)) >= 0) {
+                if (partial.length() > 0) {
+                    partial.append(text, from, newline);
+                    add(partial.toString());
+                    partial.setLength(0);
+                } else {
+                    add(text.substring(from, newline));
+                }
+                from = newline + 1;
+            }
+            if (from < text.length())
+                partial.append(text, from, text.length());
+        }
+        requestRefresh();
+    }
+
+    private void add(String line) {
+        lines[(int) (end % lines.length)] = line;
+        end++;
+        if (end - start > lines.length) {
+            start = end - lines.length;
+        }
+    }
+
+    public void clear() {
+        synchronized (this) {
+            Arrays.fill(lines, null);
+            partial.setLength(0);
+            start = end;
+        }
+        requestRefresh();
+    }
+
+    private void requestRefresh() {
+        if (refreshPending.compareAndSet(false, true)) {
+            refreshScheduler.execute(() -> {
+                refreshPending.set(false);
+                refresh.run();
+            });
+        }
+    }
+
+    /**
+     * @return the range of lines currently kept, including an unfinished last line
+     */
+    public synchronized Snapshot snapshot() {
+        return new Snapshot(start, (int) (end - start) + (partial.length() > 0 ? 1 : 0));
+    }
+
+    /**
+     * @param index absolute index of the line, see {@link Snapshot#getFirst()}
+     * @return the line, or an empty string if it has been dropped since the snapshot was taken
+     */
+    public synchronized String getLine(long index) {
+        if (index >= start && index < end)
+            return lines[(int) (index % lines.length)];
+        if (index == end && partial.length() > 0)
+            return partial.toString();
+        return "";
+    }
+
+    public static final class Snapshot {
+        public static final Snapshot EMPTY = new Snapshot(0, 0);
+
+        private final long first;
+        private final int size;
+
+        Snapshot(long first, int size) {
+            this.first = first;
+            this.size = size;
+        }
+
+        /**
+         * @return absolute index of the first line
+         */
+        public long getFirst() {
+            return first;
+        }
+
+        public int getSize() {
+            return size;
+        }
+    }
+}
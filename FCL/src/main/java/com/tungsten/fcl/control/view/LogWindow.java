@@ -6,7 +6,9 @@ import android.graphics.Color;
 import android.util.AttributeSet;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ScrollView;
+import android.widget.AbsListView;
+import android.widget.BaseAdapter;
+import android.widget.ListView;
 
 import com.tungsten.fcl.R;
 import com.tungsten.fclcore.fakefx.beans.property.BooleanProperty;
@@ -14,12 +16,18 @@ import com.tungsten.fclcore.fakefx.beans.property.BooleanPropertyBase;
 import com.tungsten.fclcore.task.Schedulers;
 import com.tungsten.fcllibrary.component.view.FCLTextView;
 
-public class LogWindow extends ScrollView {
+/**
+ * Shows game output. Lines are collected by a {@link LogLineBuffer} off the UI thread,
+ * the list is refreshed at most once per frame and only visible lines have views.
+ */
+public class LogWindow extends ListView {
+
+    private static final int MAX_LINES = 5000;
 
     private boolean autoTint;
     private BooleanProperty visibilityProperty;
-    private FCLTextView textView;
-    private int lineCount;
+    private final LogLineBuffer buffer = new LogLineBuffer(MAX_LINES, this::postOnAnimation, this::refresh);
+    private final LineAdapter adapter = new LineAdapter();
 
     public LogWindow(Context context) {
         super(context);
@@ -52,14 +60,29 @@ public class LogWindow extends ScrollView {
     }
 
     private void init(Context context) {
-        this.textView = new FCLTextView(context);
+        setDivider(null);
+        setDividerHeight(0);
+        setSelector(android.R.color.transparent);
+        setCacheColorHint(Color.TRANSPARENT);
+        // Follow new lines only while the last line is visible
+        setTranscriptMode(TRANSCRIPT_MODE_NORMAL);
+        setAdapter(adapter);
+    }
+
+    private FCLTextView createLineView() {
+        FCLTextView textView = new FCLTextView(getContext());
         textView.setAutoTint(autoTint);
-        textView.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
-        addView(textView);
+        textView.setLayoutParams(new AbsListView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
         textView.setTextColor(Color.BLACK);
         textView.setTextSize(15);
         textView.setLineSpacing(0, 1f);
         textView.setEllipsize(null);
+        return textView;
+    }
+
+    private void refresh() {
+        adapter.snapshot = buffer.snapshot();
+        adapter.notifyDataSetChanged();
     }
 
     public final void setVisibilityValue(boolean visibility) {
@@ -104,21 +127,41 @@ public class LogWindow extends ScrollView {
         if (!getVisibilityValue()) {
             return;
         }
-        lineCount++;
-        this.post(() -> {
-            if (textView != null) {
-                if (lineCount < 100) {
-                    textView.append(str);
-                } else {
-                    cleanLog();
-                }
-                fullScroll(View.FOCUS_DOWN);
-            }
-        });
+        buffer.append(str);
     }
 
     public void cleanLog() {
-        this.textView.setText("");
-        lineCount = 0;
+        buffer.clear();
+    }
+
+    private final class LineAdapter extends BaseAdapter {
+        private LogLineBuffer.Snapshot snapshot = LogLineBuffer.Snapshot.EMPTY;
+
+        @Override
+        public int getCount() {
+            return snapshot.getSize();
+        }
+
+        @Override
+        public String getItem(int position) {
+            return buffer.getLine(snapshot.getFirst() + position);
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return snapshot.getFirst() + position;
+        }
+
+        @Override
+        public boolean hasStableIds() {
+            return true;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            FCLTextView textView = convertView instanceof FCLTextView ? (FCLTextView) convertView : createLineView();
+            textView.setText(getItem(position));
+            return textView;
+        }
     }
 }
@@ -17,15 +17,25 @@
  */
 package com.tungsten.fcl.game;
 
+import com.tungsten.fcl.setting.Profile;
+import com.tungsten.fcl.setting.Profiles;
 import com.tungsten.fclcore.download.DefaultCacheRepository;
 import com.tungsten.fclcore.fakefx.beans.property.SimpleStringProperty;
 import com.tungsten.fclcore.fakefx.beans.property.StringProperty;
+import com.tungsten.fclcore.game.DefaultGameRepository;
+import com.tungsten.fclcore.util.CacheCollector;
 
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
 
 public class FCLCacheRepository extends DefaultCacheRepository {
 
+    private static final long MAX_CACHE_SIZE = 1024L * 1024 * 1024;
+
     private final StringProperty directory = new SimpleStringProperty();
+    private final CacheCollector collector = new CacheCollector(this, MAX_CACHE_SIZE, FCLCacheRepository::getReferencedHashes);
 
     public FCLCacheRepository() {
         directory.addListener((a, b, t) -> changeDirectory(Paths.get(t)));
@@ -43,5 +53,28 @@ public class FCLCacheRepository extends DefaultCacheRepository {
         this.directory.set(directory);
     }
 
+    public CacheCollector getCollector() {
+        return collector;
+    }
+
+    /**
+     * Files of versions in all profiles are kept in the cache.
+     * Versions of profiles not loaded are read without loading them, which would fire events.
+     */
+    private static Set<String> getReferencedHashes() {
+        if (!Profiles.isInitialized())
+            throw new IllegalStateException("Profiles are not loaded yet");
+
+        Set<String> hashes = new HashSet<>();
+        for (Profile profile : new ArrayList<>(Profiles.getProfiles())) {
+            DefaultGameRepository repository = profile.getRepository();
+            if (repository.isLoaded())
+                hashes.addAll(repository.getReferencedHashes());
+            else
+                hashes.addAll(new DefaultGameRepository(profile.getGameDir()).readReferencedHashes());
+        }
+        return hashes;
+    }
+
     public static final FCLCacheRepository REPOSITORY = new FCLCacheRepository();
 }
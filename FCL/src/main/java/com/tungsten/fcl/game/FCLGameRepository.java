@@ -20,6 +20,8 @@ package com.tungsten.fcl.game;
 import static com.tungsten.fclcore.util.Logging.LOG;
 
 import android.annotation.SuppressLint;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 
@@ -35,6 +37,7 @@ import com.tungsten.fclauncher.utils.FCLPath;
 import com.tungsten.fclcore.download.LibraryAnalyzer;
 import com.tungsten.fclcore.event.Event;
 import com.tungsten.fclcore.event.EventManager;
+import com.tungsten.fclcore.event.EventPriority;
 import com.tungsten.fclcore.game.DefaultGameRepository;
 import com.tungsten.fclcore.game.GameDirectoryType;
 import com.tungsten.fclcore.game.JavaVersion;
@@ -47,6 +50,7 @@ import com.tungsten.fclcore.mod.ModpackProvider;
 import com.tungsten.fclcore.util.Lang;
 import com.tungsten.fclcore.util.StringUtils;
 import com.tungsten.fclcore.util.gson.JsonUtils;
+import com.tungsten.fclcore.util.io.DirectoryCloner;
 import com.tungsten.fclcore.util.io.FileUtils;
 import com.tungsten.fclcore.util.platform.MemoryUtils;
 import com.tungsten.fclcore.util.platform.OperatingSystem;
@@ -60,6 +64,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.stream.Stream;
 
@@ -68,13 +73,18 @@ public class FCLGameRepository extends DefaultGameRepository {
 
     // local version settings
     private final Map<String, VersionSetting> localVersionSettings = new HashMap<>();
+    private VersionSettingStore versionSettingStore;
     private final Set<String> beingModpackVersions = new HashSet<>();
 
     public final EventManager<Event> onVersionIconChanged = new EventManager<>();
+    // version id -> icon shown for the version
+    private final Map<String, VersionIcon> versionIcons = new ConcurrentHashMap<>();
 
     public FCLGameRepository(Profile profile, File baseDirectory) {
         super(baseDirectory);
         this.profile = profile;
+        this.versionSettingStore = new VersionSettingStore(getVersionSettingIndexFile(), GSON);
+        onVersionIconChanged.register(versionIcons::clear, EventPriority.HIGHEST);
     }
 
     public Profile getProfile() {
@@ -113,6 +123,10 @@ public class FCLGameRepository extends DefaultGameRepository {
     protected void refreshVersionsImpl() {
         localVersionSettings.clear();
         super.refreshVersionsImpl();
+        if (!getVersionSettingIndexFile().equals(versionSettingStore.getIndexFile()))
+            versionSettingStore = new VersionSettingStore(getVersionSettingIndexFile(), GSON);
+        versionSettingStore.load();
+        versionSettingStore.retain(versions.keySet());
         versions.keySet().forEach(this::loadLocalVersionSetting);
         versions.keySet().forEach(version -> {
             if (isModpack(version)) {
@@ -159,7 +173,9 @@ public class FCLGameRepository extends DefaultGameRepository {
             blackList.add("saves");
 
         if (Files.exists(dstDir)) throw new IOException("Version exists");
-        FileUtils.copyDirectory(srcDir, dstDir, path -> Modpack.acceptFile(path, blackList, null));
+        // Jars, mods and resource packs are shared with the source version if possible
+        DirectoryCloner cloner = new DirectoryCloner(path -> Modpack.acceptFile(path, blackList, null), DirectoryCloner.ARCHIVES);
+        cloner.cloneDirectory(srcDir, dstDir);
 
         Path fromJson = srcDir.resolve(srcId + ".json");
         Path fromJar = srcDir.resolve(srcId + ".jar");
@@ -167,7 +183,7 @@ public class FCLGameRepository extends DefaultGameRepository {
         Path toJar = dstDir.resolve(dstId + ".jar");
 
         if (Files.exists(fromJar)) {
-            Files.copy(fromJar, toJar);
+            cloner.cloneFile(fromJar, toJar);
         }
         Files.copy(fromJson, toJson);
 
@@ -184,7 +200,11 @@ public class FCLGameRepository extends DefaultGameRepository {
         File dstGameDir = getRunDirectory(dstId);
 
         if (originalGameDirType != GameDirectoryType.VERSION_FOLDER)
-            FileUtils.copyDirectory(srcGameDir.toPath(), dstGameDir.toPath(), path -> Modpack.acceptFile(path, blackList, null));
+            cloner.cloneDirectory(srcGameDir.toPath(), dstGameDir.toPath());
+    }
+
+    private File getVersionSettingIndexFile() {
+        return new File(getBaseDirectory(), "fclversions.json");
     }
 
     private File getLocalVersionSettingFile(String id) {
@@ -193,14 +213,16 @@ public class FCLGameRepository extends DefaultGameRepository {
 
     private void loadLocalVersionSetting(String id) {
         File file = getLocalVersionSettingFile(id);
-        if (file.exists())
-            try {
-                VersionSetting versionSetting = GSON.fromJson(FileUtils.readText(file), VersionSetting.class);
+        try {
+            VersionSetting versionSetting = versionSettingStore.read(id, file);
+            if (versionSetting != null)
                 initLocalVersionSetting(id, versionSetting);
-            } catch (Exception ex) {
-                // If [JsonParseException], [IOException] or [NullPointerException] happens, the json file is malformed and needed to be recreated.
+            else if (file.exists())
                 initLocalVersionSetting(id, new VersionSetting());
-            }
+        } catch (Exception ex) {
+            // If [JsonParseException], [IOException] or [NullPointerException] happens, the json file is malformed and needed to be recreated.
+            initLocalVersionSetting(id, new VersionSetting());
+        }
     }
 
     /**
@@ -220,7 +242,7 @@ public class FCLGameRepository extends DefaultGameRepository {
 
     private VersionSetting initLocalVersionSetting(String id, VersionSetting vs) {
         localVersionSettings.put(id, vs);
-        vs.addPropertyChangedListener(a -> saveVersionSetting(id));
+        vs.addPropertyChangedListener(a -> versionSettingStore.save(id, getLocalVersionSettingFile(id), vs));
         return vs;
     }
 
@@ -268,35 +290,96 @@ public class FCLGameRepository extends DefaultGameRepository {
         if (id == null || !isLoaded())
             return FCLPath.CONTEXT.getDrawable(R.drawable.img_grass);
 
-        Version version = getVersion(id).resolve(this);
+        Version version = getVersion(id);
         File iconFile = getVersionIconFile(id);
-        if (iconFile.exists())
-            return BitmapDrawable.createFromPath(iconFile.getAbsolutePath());
-        else if (LibraryAnalyzer.analyze(version, null).has(LibraryAnalyzer.LibraryType.FORGE))
-            return FCLPath.CONTEXT.getDrawable(R.drawable.img_forge);
-        else if (LibraryAnalyzer.analyze(version, null).has(LibraryAnalyzer.LibraryType.NEO_FORGE))
-            return FCLPath.CONTEXT.getDrawable(R.drawable.img_neoforge);
-        else if (LibraryAnalyzer.analyze(version, null).has(LibraryAnalyzer.LibraryType.LITELOADER))
-            return FCLPath.CONTEXT.getDrawable(R.drawable.img_chicken);
-        else if (LibraryAnalyzer.analyze(version, null).has(LibraryAnalyzer.LibraryType.OPTIFINE))
-            return FCLPath.CONTEXT.getDrawable(R.drawable.img_optifine);
-        else if (LibraryAnalyzer.analyze(version, null).has(LibraryAnalyzer.LibraryType.FABRIC))
-            return FCLPath.CONTEXT.getDrawable(R.drawable.img_fabric);
-        else if (LibraryAnalyzer.analyze(version, null).has(LibraryAnalyzer.LibraryType.QUILT))
-            return FCLPath.CONTEXT.getDrawable(R.drawable.img_quilt);
+        long lastModified = iconFile.lastModified();
+        long length = iconFile.length();
+        VersionIcon icon = versionIcons.get(id);
+        if (icon == null || !icon.isUpToDate(version, lastModified, length)) {
+            icon = loadVersionIcon(version, iconFile, lastModified, length);
+            versionIcons.put(id, icon);
+        }
+
+        if (icon.bitmap != null)
+            return new BitmapDrawable(FCLPath.CONTEXT.getResources(), icon.bitmap);
         else
-            return FCLPath.CONTEXT.getDrawable(R.drawable.img_grass);
+            return FCLPath.CONTEXT.getDrawable(icon.resource);
+    }
+
+    private VersionIcon loadVersionIcon(Version version, File iconFile, long lastModified, long length) {
+        if (lastModified != 0) {
+            Bitmap bitmap = decodeVersionIcon(iconFile);
+            if (bitmap != null)
+                return new VersionIcon(version, lastModified, length, bitmap, 0);
+        }
+
+        LibraryAnalyzer analyzer = LibraryAnalyzer.analyze(version.resolve(this), null);
+        int resource;
+        if (analyzer.has(LibraryAnalyzer.LibraryType.FORGE))
+            resource = R.drawable.img_forge;
+        else if (analyzer.has(LibraryAnalyzer.LibraryType.NEO_FORGE))
+            resource = R.drawable.img_neoforge;
+        else if (analyzer.has(LibraryAnalyzer.LibraryType.LITELOADER))
+            resource = R.drawable.img_chicken;
+        else if (analyzer.has(LibraryAnalyzer.LibraryType.OPTIFINE))
+            resource = R.drawable.img_optifine;
+        else if (analyzer.has(LibraryAnalyzer.LibraryType.FABRIC))
+            resource = R.drawable.img_fabric;
+        else if (analyzer.has(LibraryAnalyzer.LibraryType.QUILT))
+            resource = R.drawable.img_quilt;
+        else
+            resource = R.drawable.img_grass;
+        return new VersionIcon(version, lastModified, length, null, resource);
+    }
+
+    /**
+     * Decode the icon no larger than needed to fill an icon view.
+     */
+    @Nullable
+    private static Bitmap decodeVersionIcon(File iconFile) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(iconFile.getAbsolutePath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0)
+            return null;
+
+        int size = (int) Math.ceil(ICON_SIZE * FCLPath.CONTEXT.getResources().getDisplayMetrics().density);
+        int sampleSize = 1;
+        while (Math.min(options.outWidth, options.outHeight) / (sampleSize * 2) >= size)
+            sampleSize *= 2;
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        return BitmapFactory.decodeFile(iconFile.getAbsolutePath(), options);
+    }
+
+    private static final class VersionIcon {
+        private final Version version;
+        private final long lastModified;
+        private final long length;
+        private final Bitmap bitmap;
+        private final int resource;
+
+        VersionIcon(Version version, long lastModified, long length, Bitmap bitmap, int resource) {
+            this.version = version;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.bitmap = bitmap;
+            this.resource = resource;
+        }
+
+        /**
+         * Versions are loaded again on refresh, so a changed version json is noticed too.
+         */
+        boolean isUpToDate(Version version, long lastModified, long length) {
+            return this.version == version && this.lastModified == lastModified && this.length == length;
+        }
     }
 
     public boolean saveVersionSetting(String id) {
         if (!localVersionSettings.containsKey(id))
             return false;
-        File file = getLocalVersionSettingFile(id);
-        if (!FileUtils.makeDirectory(file.getAbsoluteFile().getParentFile()))
-            return false;
-
         try {
-            FileUtils.writeText(file, GSON.toJson(localVersionSettings.get(id)));
+            versionSettingStore.saveNow(id, getLocalVersionSettingFile(id), localVersionSettings.get(id));
             return true;
         } catch (IOException e) {
             LOG.log(Level.SEVERE, "Unable to save version setting of " + id, e);
@@ -398,6 +481,9 @@ public class FCLGameRepository extends DefaultGameRepository {
         return result;
     }
 
+    // Size of version icons in the launcher, in dp
+    private static final int ICON_SIZE = 30;
+
     private static final Gson GSON = new GsonBuilder()
             .setPrettyPrinting()
             .create();
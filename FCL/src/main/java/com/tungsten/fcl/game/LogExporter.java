@@ -21,10 +21,17 @@ import com.tungsten.fclcore.game.DefaultGameRepository;
 import com.tungsten.fclcore.game.Version;
 import com.tungsten.fclcore.util.Logging;
 import com.tungsten.fclcore.util.StringUtils;
+import com.tungsten.fclcore.util.io.IOUtils;
 import com.tungsten.fclcore.util.io.Zipper;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -59,18 +66,28 @@ public final class LogExporter {
         return CompletableFuture.runAsync(() -> {
             try (Zipper zipper = new Zipper(zipFile)) {
                 Path logsDir = runDirectory.resolve("logs");
-                if (Files.exists(logsDir.resolve("debug.log"))) {
-                    zipper.putFile(logsDir.resolve("debug.log"), "debug.log");
-                }
-                if (Files.exists(logsDir.resolve("latest.log"))) {
-                    zipper.putFile(logsDir.resolve("latest.log"), "latest.log");
+                for (String name : new String[]{"debug.log", "latest.log", "fml-client-latest.log"}) {
+                    Path file = logsDir.resolve(name);
+                    if (Files.exists(file)) {
+                        putFilteredFile(zipper, file, name);
+                    }
                 }
-                if (Files.exists(logsDir.resolve("fml-client-latest.log"))) {
-                    zipper.putFile(logsDir.resolve("fml-client-latest.log"), "fml-client-latest.log");
+
+                Path crashReport = findLatestCrashReport(runDirectory.resolve("crash-reports"));
+                if (crashReport != null) {
+                    putFilteredFile(zipper, crashReport, "crash-reports/" + crashReport.getFileName());
                 }
 
-                zipper.putTextFile(Logging.getLogs(), "fcl.log");
-                zipper.putTextFile(logs, "minecraft.log");
+                zipper.putStream("fcl.log", out -> {
+                    try (OutputStream filtered = Logging.filterForbiddenToken(out)) {
+                        Logging.writeLogs(filtered);
+                    }
+                });
+                zipper.putStream("minecraft.log", out -> {
+                    try (Writer writer = new OutputStreamWriter(Logging.filterForbiddenToken(out), StandardCharsets.UTF_8)) {
+                        writer.write(logs);
+                    }
+                });
 
                 for (String id : versions) {
                     Path versionJson = baseDirectory.resolve("versions").resolve(id).resolve(id + ".json");
@@ -83,4 +100,31 @@ public final class LogExporter {
             }
         });
     }
+
+    private static void putFilteredFile(Zipper zipper, Path file, String path) throws IOException {
+        zipper.putStream(path, out -> {
+            try (InputStream input = Files.newInputStream(file);
+                 OutputStream filtered = Logging.filterForbiddenToken(out)) {
+                IOUtils.copyTo(input, filtered);
+            }
+        });
+    }
+
+    private static Path findLatestCrashReport(Path crashReports) throws IOException {
+        if (!Files.isDirectory(crashReports))
+            return null;
+
+        Path latest = null;
+        long latestModified = Long.MIN_VALUE;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(crashReports, "*.txt")) {
+            for (Path file : stream) {
+                long modified = Files.getLastModifiedTime(file).toMillis();
+                if (modified > latestModified) {
+                    latest = file;
+                    latestModified = modified;
+                }
+            }
+        }
+        return latest;
+    }
 }
@@ -0,0 +1,275 @@
+package com.tungsten.fcl.game;
+
+import static com.tungsten.fclcore.util.Logging.LOG;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.tungsten.fcl.setting.VersionSetting;
+import com.tungsten.fclcore.util.InvocationDispatcher;
+import com.tungsten.fclcore.util.Lang;
+import com.tungsten.fclcore.util.io.FileUtils;
+import com.tungsten.fclcore.util.io.JsonJournal;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * Keeps the settings of all versions in a game directory together in one index file.
+ *
+ * Each version still has its own fclversion.cfg, which is exported with modpacks and may be replaced
+ * by them. The index remembers the modification time and size of every fclversion.cfg it was built from,
+ * so loading all versions reads the index once and only parses files changed outside the launcher.
+ *
+ * Changes are collected and written in the background shortly after the last one,
+ * so dragging a slider writes the files once instead of on every step.
+ * Changed entries are appended to a journal next to the index, which is only rewritten once the journal grows long.
+ */
+final class VersionSettingStore {
+
+    // Changes made within this time are written together
+    private static final long COMMIT_DELAY = 500;
+    private static final String JOURNAL_NAME = "fclversions.journal";
+    private static final int MAX_JOURNAL_SIZE = 64;
+
+    private final File indexFile;
+    private final JsonJournal<Change> journal;
+    private final Gson gson;
+    // version id -> setting as last written
+    private final Map<String, Entry> entries = new HashMap<>();
+    // version id -> setting not written yet
+    private final Map<String, Pending> pending = new LinkedHashMap<>();
+    // version id -> entry not journaled yet, null if the version has been removed
+    private final Map<String, Entry> changes = new LinkedHashMap<>();
+
+    private final InvocationDispatcher<Object> committer = InvocationDispatcher.runOn(Lang::thread, ignored -> {
+        try {
+            Thread.sleep(COMMIT_DELAY);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        commit();
+    });
+
+    VersionSettingStore(File indexFile, Gson gson) {
+        this.indexFile = indexFile;
+        this.journal = new JsonJournal<>(new File(indexFile.getParentFile(), JOURNAL_NAME).toPath(), Change.class);
+        this.gson = gson;
+    }
+
+    File getIndexFile() {
+        return indexFile;
+    }
+
+    /**
+     * Read the index and its journal, replacing entries read before.
+     */
+    synchronized void load() {
+        entries.clear();
+        changes.clear();
+        if (indexFile.isFile()) {
+            try {
+                Index index = gson.fromJson(FileUtils.readText(indexFile), Index.class);
+                if (index != null && index.versions != null) {
+                    index.versions.forEach((id, entry) -> {
+                        if (id != null && isValid(entry))
+                            entries.put(id, entry);
+                    });
+                }
+            } catch (IOException | JsonParseException e) {
+                LOG.log(Level.WARNING, "Unable to read version settings index " + indexFile, e);
+            }
+        }
+
+        journal.replay(change -> {
+            if (change.id == null)
+                return;
+            if (isValid(change.entry))
+                entries.put(change.id, change.entry);
+            else
+                entries.remove(change.id);
+        });
+        if (journal.size() >= MAX_JOURNAL_SIZE)
+            saveIndex();
+    }
+
+    private static boolean isValid(Entry entry) {
+        return entry != null && entry.setting != null;
+    }
+
+    /**
+     * Forget versions which no longer exist.
+     */
+    synchronized void retain(Collection<String> ids) {
+        for (String id : entries.keySet()) {
+            if (!ids.contains(id))
+                changes.put(id, null);
+        }
+        entries.keySet().retainAll(ids);
+    }
+
+    /**
+     * @param file fclversion.cfg of the version
+     * @return the setting of the version, or null if it has none
+     * @throws JsonParseException if the setting file is malformed
+     */
+    @Nullable
+    synchronized VersionSetting read(String id, File file) throws IOException, JsonParseException {
+        Pending change = pending.get(id);
+        if (change != null)
+            return gson.fromJson(change.setting, VersionSetting.class);
+
+        if (!file.isFile())
+            return null;
+
+        Entry entry = entries.get(id);
+        if (entry != null && entry.lastModified == file.lastModified() && entry.size == file.length())
+            return gson.fromJson(entry.setting, VersionSetting.class);
+
+        // Written outside the launcher, or not indexed yet
+        String json = FileUtils.readText(file);
+        VersionSetting setting = gson.fromJson(json, VersionSetting.class);
+        if (setting != null) {
+            Entry updated = new Entry(file.lastModified(), file.length(), gson.toJsonTree(setting));
+            entries.put(id, updated);
+            changes.put(id, updated);
+            committer.accept(id);
+        }
+        return setting;
+    }
+
+    /**
+     * Write the setting soon, together with other changes made meanwhile.
+     */
+    void save(String id, File file, VersionSetting setting) {
+        JsonElement json = gson.toJsonTree(setting);
+        synchronized (this) {
+            pending.put(id, new Pending(file, json));
+        }
+        committer.accept(id);
+    }
+
+    /**
+     * Write the setting and its index entry now.
+     */
+    void saveNow(String id, File file, VersionSetting setting) throws IOException {
+        JsonElement json = gson.toJsonTree(setting);
+        synchronized (this) {
+            pending.put(id, new Pending(file, json));
+        }
+        if (!commit())
+            throw new IOException("Unable to save version setting of " + id);
+    }
+
+    /**
+     * @return false if any file could not be written
+     */
+    private synchronized boolean commit() {
+        boolean succeeded = true;
+        for (Map.Entry<String, Pending> change : pending.entrySet()) {
+            File file = change.getValue().file;
+            JsonElement setting = change.getValue().setting;
+            try {
+                if (!FileUtils.makeDirectory(file.getAbsoluteFile().getParentFile()))
+                    throw new IOException("Unable to create directory " + file.getParentFile());
+                FileUtils.saveSafely(file.toPath(), gson.toJson(setting));
+                Entry updated = new Entry(file.lastModified(), file.length(), setting);
+                entries.put(change.getKey(), updated);
+                changes.put(change.getKey(), updated);
+            } catch (IOException e) {
+                LOG.log(Level.SEVERE, "Unable to save version setting of " + change.getKey(), e);
+                succeeded = false;
+            }
+        }
+        pending.clear();
+
+        if (!changes.isEmpty()) {
+            List<Change> records = new ArrayList<>(changes.size());
+            changes.forEach((id, entry) -> records.add(new Change(id, entry)));
+            try {
+                journal.append(records);
+                changes.clear();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Unable to append to version settings journal " + journal.getFile(), e);
+            }
+            if (!changes.isEmpty() || journal.size() >= MAX_JOURNAL_SIZE)
+                saveIndex();
+        }
+        return succeeded;
+    }
+
+    /**
+     * Rewrite the index with all entries, and drop the journal it now contains.
+     */
+    private void saveIndex() {
+        try {
+            FileUtils.saveSafely(indexFile.toPath(), gson.toJson(new Index(entries)));
+            changes.clear();
+            journal.clear();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to save version settings index " + indexFile, e);
+        }
+    }
+
+    private static final class Index {
+        private final Map<String, Entry> versions;
+
+        public Index() {
+            this(null);
+        }
+
+        public Index(Map<String, Entry> versions) {
+            this.versions = versions;
+        }
+    }
+
+    private static final class Entry {
+        private final long lastModified;
+        private final long size;
+        private final JsonElement setting;
+
+        public Entry() {
+            this(0, 0, null);
+        }
+
+        public Entry(long lastModified, long size, JsonElement setting) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.setting = setting;
+        }
+    }
+
+    private static final class Change {
+        private final String id;
+        // null if the version has been removed
+        private final Entry entry;
+
+        public Change() {
+            this(null, null);
+        }
+
+        public Change(String id, Entry entry) {
+            this.id = id;
+            this.entry = entry;
+        }
+    }
+
+    private static final class Pending {
+        private final File file;
+        private final JsonElement setting;
+
+        Pending(File file, JsonElement setting) {
+            this.file = file;
+            this.setting = setting;
+        }
+    }
+}
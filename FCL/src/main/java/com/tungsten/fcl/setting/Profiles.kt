@@ -155,6 +155,11 @@ object Profiles {
         isFirstRefresh = false
     }
 
+    @JvmStatic
+    fun isInitialized(): Boolean {
+        return initialized
+    }
+
     @JvmStatic
     fun getSelectedProfile(): Profile {
         return selectedProfile.get() ?: profiles[0]
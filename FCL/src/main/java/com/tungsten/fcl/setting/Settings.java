@@ -49,6 +49,8 @@ public final class Settings {
 
         CacheRepository.setInstance(FCLCacheRepository.REPOSITORY);
         FCLCacheRepository.REPOSITORY.setDirectory(FCLPath.CACHE_DIR);
+        // Profiles.init() above has loaded the profiles, so files used by their versions are known
+        FCLCacheRepository.REPOSITORY.getCollector().collectAsync();
     }
 
 }
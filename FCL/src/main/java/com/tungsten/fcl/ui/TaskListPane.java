@@ -36,10 +36,10 @@ import com.tungsten.fclcore.mod.multimc.MultiMCModpackInstallTask;
 import com.tungsten.fclcore.mod.server.ServerModpackCompletionTask;
 import com.tungsten.fclcore.mod.server.ServerModpackExportTask;
 import com.tungsten.fclcore.mod.server.ServerModpackLocalInstallTask;
-import com.tungsten.fclcore.task.Schedulers;
 import com.tungsten.fclcore.task.Task;
 import com.tungsten.fclcore.task.TaskExecutor;
 import com.tungsten.fclcore.task.TaskListener;
+import com.tungsten.fclcore.task.TaskProgressAggregator;
 import com.tungsten.fclcore.util.Lang;
 import com.tungsten.fclcore.util.StringUtils;
 import com.tungsten.fcllibrary.component.FCLAdapter;
@@ -88,7 +88,7 @@ public final class TaskListPane extends FCLAdapter {
         executor.addTaskListener(new TaskListener() {
             @Override
             public void onStart() {
-                Schedulers.androidUIThread().execute(() -> {
+                TaskProgressAggregator.getInstance().post(() -> {
                     stageNodes.clear();
                     stageNodes.addAll(stages.stream().map(it -> new StageNode(getContext(), it)).collect(Collectors.toList()));
                     for (StageNode stageNode : stageNodes) {
@@ -101,7 +101,7 @@ public final class TaskListPane extends FCLAdapter {
             @Override
             public void onReady(Task<?> task) {
                 if (task.getStage() != null) {
-                    Schedulers.androidUIThread().execute(() -> stageNodes.stream().filter(x -> x.stage.equals(task.getStage())).findAny().ifPresent(StageNode::begin));
+                    TaskProgressAggregator.getInstance().post(() -> stageNodes.stream().filter(x -> x.stage.equals(task.getStage())).findAny().ifPresent(StageNode::begin));
                 }
             }
 
@@ -148,7 +148,7 @@ public final class TaskListPane extends FCLAdapter {
                     task.setName(getLocalizedText(getContext(), "modpack_scan"));
                 }
 
-                Schedulers.androidUIThread().execute(() -> {
+                TaskProgressAggregator.getInstance().post(() -> {
                     StageNode stageNode = stageNodes.stream().filter(x -> x.stage.equals(task.getInheritedStage())).findAny().orElse(null);
                     ProgressListNode node = new ProgressListNode(getContext(), stageNode != null && stageNodes.contains(stageNode), task);
                     nodes.put(task, node);
@@ -160,10 +160,10 @@ public final class TaskListPane extends FCLAdapter {
             @Override
             public void onFinished(Task<?> task) {
                 if (task.getStage() != null) {
-                    Schedulers.androidUIThread().execute(() -> stageNodes.stream().filter(x -> x.stage.equals(task.getStage())).findAny().ifPresent(StageNode::succeed));
+                    TaskProgressAggregator.getInstance().post(() -> stageNodes.stream().filter(x -> x.stage.equals(task.getStage())).findAny().ifPresent(StageNode::succeed));
                 }
 
-                Schedulers.androidUIThread().execute(() -> {
+                TaskProgressAggregator.getInstance().post(() -> {
                     ProgressListNode node = nodes.remove(task);
                     if (node == null)
                         return;
@@ -176,18 +176,20 @@ public final class TaskListPane extends FCLAdapter {
             @Override
             public void onFailed(Task<?> task, Throwable throwable) {
                 if (task.getStage() != null) {
-                    Schedulers.androidUIThread().execute(() -> stageNodes.stream().filter(x -> x.stage.equals(task.getStage())).findAny().ifPresent(StageNode::fail));
+                    TaskProgressAggregator.getInstance().post(() -> stageNodes.stream().filter(x -> x.stage.equals(task.getStage())).findAny().ifPresent(StageNode::fail));
                 }
-                ProgressListNode node = nodes.remove(task);
-                if (node == null)
-                    return;
-                Schedulers.androidUIThread().execute(() -> node.setThrowable(throwable));
+                TaskProgressAggregator.getInstance().post(() -> {
+                    ProgressListNode node = nodes.remove(task);
+                    if (node == null)
+                        return;
+                    node.setThrowable(throwable);
+                });
             }
 
             @Override
             public void onPropertiesUpdate(Task<?> task) {
                 if (task instanceof Task.CountTask) {
-                    Schedulers.androidUIThread().execute(() -> stageNodes.stream()
+                    TaskProgressAggregator.getInstance().post(() -> stageNodes.stream()
                             .filter(x -> x.stage.equals(((Task<?>.CountTask) task).getCountStage()))
                             .findAny()
                             .ifPresent(StageNode::count));
@@ -196,7 +198,7 @@ public final class TaskListPane extends FCLAdapter {
                 }
 
                 if (task.getStage() != null) {
-                    Schedulers.androidUIThread().execute(() -> {
+                    TaskProgressAggregator.getInstance().post(() -> {
                         int total = tryCast(task.getProperties().get("total"), Integer.class).orElse(0);
                         stageNodes.stream()
                                 .filter(x -> x.stage.equals(task.getStage()))
@@ -403,7 +403,12 @@ public class VersionSettingPage extends FCLCommonPage implements ManageUI.Versio
             return;
         }
 
-        iconView.setImageDrawable(profile.getRepository().getVersionIconImage(versionId));
+        String id = versionId;
+        Task.supplyAsync(Schedulers.io(), () -> profile.getRepository().getVersionIconImage(id))
+                .thenAcceptAsync(Schedulers.androidUIThread(), drawable -> {
+                    if (id.equals(versionId))
+                        iconView.setImageDrawable(drawable);
+                }).start();
     }
 
     @Override
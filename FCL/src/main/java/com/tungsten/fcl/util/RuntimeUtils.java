@@ -1,5 +1,6 @@
 package com.tungsten.fcl.util;
 
+import static com.tungsten.fclcore.util.Lang.threadPool;
 import static com.tungsten.fclcore.util.io.FileUtils.forceDeleteQuietly;
 import static com.tungsten.fclcore.util.io.FileUtils.writeText;
 
@@ -19,11 +20,19 @@ import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
 
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 
 public class RuntimeUtils {
@@ -61,6 +70,7 @@ public class RuntimeUtils {
         String universalPath = srcDir + "/universal.tar.xz";
         String archPath = srcDir + "/bin-" + Architecture.archAsString(Architecture.getDeviceArchitecture()) + ".tar.xz";
         String version = IOUtils.readFullyAsString(RuntimeUtils.class.getResourceAsStream("/assets/" + srcDir + "/version"));
+        // The arch archive is extracted after the universal one, so it wins where both contain a file
         uncompressTarXZ(context.getAssets().open(universalPath), new File(targetDir));
         uncompressTarXZ(context.getAssets().open(archPath), new File(targetDir));
         writeText(new File(targetDir + "/version"), version);
@@ -116,44 +126,125 @@ public class RuntimeUtils {
     }
 
 
-    @SuppressWarnings("ResultOfMethodCallIgnored")
+    /**
+     * Extract a tar.xz archive. Files which already exist with the same size are kept.
+     * All files have been written when this method returns.
+     */
     public static void uncompressTarXZ(final InputStream tarFileInputStream, final File dest) throws IOException {
-        dest.mkdirs();
-        TarArchiveInputStream tarIn = new TarArchiveInputStream(new XZCompressorInputStream(tarFileInputStream));
-        TarArchiveEntry tarEntry = tarIn.getNextTarEntry();
-        while (tarEntry != null) {
-            if (tarEntry.getSize() <= 20480) {
-                try {
-                    Thread.sleep(25);
-                } catch (InterruptedException ignored) {
+        try (TarXZExtractor extractor = new TarXZExtractor(dest)) {
+            extractor.extract(tarFileInputStream);
+            extractor.awaitWrites();
+        }
+    }
+
+    /**
+     * Extracts a runtime archive. The shipped archives are xz files with a single block, so decoding is sequential;
+     * small files are handed over to a bounded writer pool, so decoding is not blocked by file creation.
+     */
+    private static final class TarXZExtractor implements Closeable {
+        private static final int WRITER_THREADS = 4;
+        private static final int INLINE_WRITE_THRESHOLD = 1024 * 1024;
+        private static final int MAX_PENDING_BYTES = 16 * 1024 * 1024;
+
+        private final File dest;
+        private final ThreadPoolExecutor writers = threadPool("RuntimeWriter", true, WRITER_THREADS, 10, TimeUnit.SECONDS);
+        private final Semaphore pendingBytes = new Semaphore(MAX_PENDING_BYTES);
+        private final AtomicReference<IOException> failure = new AtomicReference<>();
 
+        TarXZExtractor(File dest) {
+            this.dest = dest;
+        }
+
+        @SuppressWarnings("ResultOfMethodCallIgnored")
+        void extract(InputStream archive) throws IOException {
+            dest.mkdirs();
+            try (TarArchiveInputStream tarIn = new TarArchiveInputStream(new XZCompressorInputStream(new BufferedInputStream(archive)))) {
+                TarArchiveEntry tarEntry;
+                while ((tarEntry = tarIn.getNextTarEntry()) != null) {
+                    checkFailure();
+                    extractEntry(tarIn, tarEntry);
                 }
             }
+        }
+
+        @SuppressWarnings("ResultOfMethodCallIgnored")
+        private void extractEntry(TarArchiveInputStream tarIn, TarArchiveEntry tarEntry) throws IOException {
             File destPath = new File(dest, tarEntry.getName());
             if (tarEntry.isSymbolicLink()) {
                 Objects.requireNonNull(destPath.getParentFile()).mkdirs();
                 try {
-                    Os.symlink(tarEntry.getLinkName().replace("..", dest.getAbsolutePath()), new File(dest, tarEntry.getName()).getAbsolutePath());
+                    Os.symlink(tarEntry.getLinkName().replace("..", dest.getAbsolutePath()), destPath.getAbsolutePath());
                 } catch (Throwable e) {
                     Logging.LOG.log(Level.WARNING, e.getMessage());
                 }
             } else if (tarEntry.isDirectory()) {
                 destPath.mkdirs();
                 destPath.setExecutable(true);
-            } else if (!destPath.exists() || destPath.length() != tarEntry.getSize()) {
+            } else if (destPath.exists() && destPath.length() == tarEntry.getSize()) {
+                // Already extracted, the entry is skipped by the next getNextTarEntry()
+            } else if (tarEntry.getSize() > INLINE_WRITE_THRESHOLD) {
                 Objects.requireNonNull(destPath.getParentFile()).mkdirs();
-                destPath.createNewFile();
-                FileOutputStream os = new FileOutputStream(destPath);
-                byte[] buffer = new byte[1024];
-                int byteCount;
-                while ((byteCount = tarIn.read(buffer)) != -1) {
-                    os.write(buffer, 0, byteCount);
+                try (FileOutputStream os = new FileOutputStream(destPath)) {
+                    IOUtils.copyTo(tarIn, os);
+                }
+            } else {
+                int size = (int) tarEntry.getSize();
+                byte[] data = new byte[size];
+                int offset = 0;
+                while (offset < size) {
+                    int n = tarIn.read(data, offset, size - offset);
+                    if (n < 0)
+                        throw new EOFException("Unexpected end of " + tarEntry.getName());
+                    offset += n;
+                }
+                try {
+                    pendingBytes.acquire(size);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
                 }
-                os.close();
+                writers.execute(() -> {
+                    try {
+                        Objects.requireNonNull(destPath.getParentFile()).mkdirs();
+                        try (FileOutputStream os = new FileOutputStream(destPath)) {
+                            os.write(data);
+                        }
+                    } catch (IOException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        pendingBytes.release(size);
+                    }
+                });
             }
-            tarEntry = tarIn.getNextTarEntry();
         }
-        tarIn.close();
+
+        private void checkFailure() throws IOException {
+            IOException e = failure.get();
+            if (e != null)
+                throw e;
+        }
+
+        /**
+         * Wait for all queued files to be written.
+         *
+         * @throws IOException if any of the queued files failed to be written
+         */
+        void awaitWrites() throws IOException {
+            writers.shutdown();
+            try {
+                if (!writers.awaitTermination(10, TimeUnit.MINUTES))
+                    throw new IOException("Timed out waiting for runtime files to be written");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            checkFailure();
+        }
+
+        @Override
+        public void close() {
+            writers.shutdownNow();
+        }
     }
 
     @SuppressWarnings("ResultOfMethodCallIgnored")
@@ -17,6 +17,8 @@
  */
 package com.tungsten.fclcore.download;
 
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -51,13 +53,28 @@ public final class BalancedDownloadProvider implements DownloadProvider {
     public VersionList<?> getVersionListById(String id) {
         return versionLists.computeIfAbsent(id, value -> {
             VersionList<?>[] lists = new VersionList<?>[candidates.length];
+            URL[] sources = new URL[candidates.length];
             for (int i = 0; i < candidates.length; i++) {
                 lists[i] = candidates[i].getVersionListById(value);
+                // Only the game version list is fetched from the version list server,
+                // the other lists come from the hosts of each loader
+                sources[i] = "game".equals(value) ? getSource(candidates[i]) : null;
             }
-            return new MultipleSourceVersionList(lists);
+            return new MultipleSourceVersionList(lists, sources);
         });
     }
 
+    /**
+     * @return the server the given provider fetches version lists from, or null if unknown
+     */
+    private static URL getSource(DownloadProvider provider) {
+        try {
+            return new URL(provider.getVersionListURL());
+        } catch (UnsupportedOperationException | MalformedURLException e) {
+            return null;
+        }
+    }
+
     @Override
     public int getConcurrency() {
         throw new UnsupportedOperationException();
@@ -25,10 +25,12 @@ import com.tungsten.fclcore.game.LibraryDownloadInfo;
 import com.tungsten.fclcore.util.CacheRepository;
 import com.tungsten.fclcore.util.DigestUtils;
 import com.tungsten.fclcore.util.Logging;
+import com.tungsten.fclcore.util.Pair;
 import com.tungsten.fclcore.util.gson.JsonUtils;
 import com.tungsten.fclcore.util.gson.TolerableValidationException;
 import com.tungsten.fclcore.util.gson.Validation;
 import com.tungsten.fclcore.util.io.FileUtils;
+import com.tungsten.fclcore.util.io.JsonJournal;
 
 import org.jetbrains.annotations.NotNull;
 
@@ -41,13 +43,16 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
+
+import static com.tungsten.fclcore.util.Pair.pair;
 
 public class DefaultCacheRepository extends CacheRepository {
     private Path librariesDir;
     private Path indexFile;
+    private JsonJournal<LibraryIndex> journal;
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
-    private Index index = null;
+    // name -> hash -> entry
+    private final Map<String, Map<String, LibraryIndex>> libraries = new HashMap<>();
 
     public DefaultCacheRepository() {
         this(new File(FCLPath.CACHE_DIR).toPath());
@@ -66,18 +71,28 @@ public class DefaultCacheRepository extends CacheRepository {
 
         lock.writeLock().lock();
         try {
-            if (Files.isRegularFile(indexFile))
-                index = JsonUtils.fromNonNullJson(FileUtils.readText(indexFile), Index.class);
-            else
-                index = new Index();
-        } catch (IOException | JsonParseException e) {
-            Logging.LOG.log(Level.WARNING, "Unable to read index file", e);
-            index = new Index();
+            libraries.clear();
+            try {
+                if (Files.isRegularFile(indexFile))
+                    JsonUtils.fromNonNullJson(FileUtils.readText(indexFile), Index.class).getLibraries().forEach(this::putIndex);
+            } catch (IOException | JsonParseException e) {
+                Logging.LOG.log(Level.WARNING, "Unable to read index file", e);
+            }
+
+            // Changes made since the index was last written
+            journal = new JsonJournal<>(getCacheDirectory().resolve("index.journal"), LibraryIndex.class);
+            journal.replay(this::putIndex);
+            if (journal.size() >= MAX_JOURNAL_SIZE)
+                compactIndex();
         } finally {
             lock.writeLock().unlock();
         }
     }
 
+    private boolean putIndex(LibraryIndex libIndex) {
+        return libraries.computeIfAbsent(libIndex.getName(), name -> new LinkedHashMap<>()).putIfAbsent(libIndex.getHash(), libIndex) == null;
+    }
+
     /**
      * Try to cache the library given.
      * This library will be cached only if it is verified.
@@ -87,30 +102,68 @@ public class DefaultCacheRepository extends CacheRepository {
      * @param jar the file of library
      */
     public void tryCacheLibrary(Library library, Path jar) {
+        tryCacheLibraries(Collections.singletonList(pair(library, jar)), Collections.emptyMap());
+    }
+
+    /**
+     * Try to cache the libraries given, updating the index once for all of them.
+     * Libraries will be cached only if they are verified.
+     *
+     * @param libraries the libraries being cached and their files
+     * @param knownHashes SHA-1 of files which have just been verified, these will not be hashed again
+     */
+    public void tryCacheLibraries(List<Pair<Library, Path>> libraries, Map<Path, String> knownHashes) {
+        Set<String> cached = new HashSet<>();
+        List<LibraryIndex> added = new ArrayList<>();
+        for (Pair<Library, Path> entry : libraries) {
+            Library library = entry.getKey();
+            Path jar = entry.getValue();
+            if (cached.contains(library.getName()) || isCached(library.getName()))
+                continue;
+
+            try {
+                LibraryDownloadInfo info = library.getDownload();
+                String hash = info.getSha1();
+                String checksum = knownHashes.get(jar);
+                if (hash != null) {
+                    if (checksum == null)
+                        checksum = DigestUtils.digestToString(SHA1, jar);
+                    if (hash.equalsIgnoreCase(checksum))
+                        added.add(copyToCache(library, jar, hash, false));
+                } else if (library.getChecksums() != null && !library.getChecksums().isEmpty()) {
+                    if (checksum != null || LibraryDownloadTask.checksumValid(jar.toFile(), library.getChecksums()))
+                        added.add(copyToCache(library, jar, checksum, true));
+                } else {
+                    // or we will not cache the library
+                    continue;
+                }
+                cached.add(library.getName());
+            } catch (IOException e) {
+                Logging.LOG.log(Level.WARNING, "Unable to cache library " + jar, e);
+            }
+        }
+
+        saveIndex(added);
+    }
+
+    private boolean isCached(String name) {
         lock.readLock().lock();
         try {
-            if (index.getLibraries().stream().anyMatch(it -> library.getName().equals(it.getName())))
-                return;
+            return libraries.containsKey(name);
         } finally {
             lock.readLock().unlock();
         }
+    }
 
-        try {
-            LibraryDownloadInfo info = library.getDownload();
-            String hash = info.getSha1();
-            if (hash != null) {
-                String checksum = DigestUtils.digestToString("SHA-1", jar);
-                if (hash.equalsIgnoreCase(checksum))
-                    cacheLibrary(library, jar, false);
-            } else if (library.getChecksums() != null && !library.getChecksums().isEmpty()) {
-                if (LibraryDownloadTask.checksumValid(jar.toFile(), library.getChecksums()))
-                    cacheLibrary(library, jar, true);
-            } else {
-                // or we will not cache the library
-            }
-        } catch (IOException e) {
-            Logging.LOG.log(Level.WARNING, "Unable to calc hash value of file " + jar, e);
-        }
+    private LibraryIndex copyToCache(Library library, Path path, String hash, boolean forge) throws IOException {
+        if (hash == null)
+            hash = DigestUtils.digestToString(SHA1, path);
+
+        Path cache = getFile(SHA1, hash);
+        if (!Files.isRegularFile(cache) || Files.size(cache) != Files.size(path))
+            FileUtils.copyFile(path, cache);
+
+        return new LibraryIndex(library.getName(), hash, forge ? LibraryIndex.TYPE_FORGE : LibraryIndex.TYPE_JAR);
     }
 
     /**
@@ -131,10 +184,8 @@ public class DefaultCacheRepository extends CacheRepository {
 
         try {
             // check if this library is from Forge
-            List<LibraryIndex> libraries = index.getLibraries().stream()
-                    .filter(it -> it.getName().equals(library.getName()))
-                    .collect(Collectors.toList());
-            for (LibraryIndex libIndex : libraries) {
+            Map<String, LibraryIndex> entries = libraries.getOrDefault(library.getName(), Collections.emptyMap());
+            for (LibraryIndex libIndex : entries.values()) {
                 if (fileExists(SHA1, libIndex.getHash())) {
                     Path file = getFile(SHA1, libIndex.getHash());
                     if (libIndex.getType().equalsIgnoreCase(LibraryIndex.TYPE_FORGE)) {
@@ -186,28 +237,82 @@ public class DefaultCacheRepository extends CacheRepository {
         Path cache = getFile(SHA1, hash);
         FileUtils.copyFile(path, cache);
 
+        saveIndex(Collections.singletonList(new LibraryIndex(library.getName(), hash, forge ? LibraryIndex.TYPE_FORGE : LibraryIndex.TYPE_JAR)));
+
+        return cache;
+    }
+
+    @Override
+    protected void evict(Set<String> hashes) {
         Lock writeLock = lock.writeLock();
         writeLock.lock();
         try {
-            LibraryIndex libIndex = new LibraryIndex(library.getName(), hash, forge ? LibraryIndex.TYPE_FORGE : LibraryIndex.TYPE_JAR);
-            index.getLibraries().add(libIndex);
-            saveIndex();
+            boolean removed = false;
+            for (Iterator<Map<String, LibraryIndex>> iterator = libraries.values().iterator(); iterator.hasNext(); ) {
+                Map<String, LibraryIndex> entries = iterator.next();
+                if (entries.values().removeIf(libIndex -> hashes.contains(libIndex.getHash().toLowerCase(Locale.ROOT))))
+                    removed = true;
+                if (entries.isEmpty())
+                    iterator.remove();
+            }
+            // The journal only records additions
+            if (removed)
+                compactIndex();
         } finally {
             writeLock.unlock();
         }
 
-        return cache;
+        super.evict(hashes);
+    }
+
+    /**
+     * Add entries to the index and append the new ones to the journal.
+     * The journal is merged into index.json once it gets long.
+     */
+    private void saveIndex(List<LibraryIndex> entries) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            List<LibraryIndex> added = new ArrayList<>(entries.size());
+            for (LibraryIndex libIndex : entries) {
+                if (putIndex(libIndex))
+                    added.add(libIndex);
+            }
+            if (added.isEmpty() || journal == null) return;
+
+            try {
+                journal.append(added);
+            } catch (IOException e) {
+                Logging.LOG.log(Level.SEVERE, "Unable to save " + journal.getFile(), e);
+                compactIndex();
+                return;
+            }
+            if (journal.size() >= MAX_JOURNAL_SIZE)
+                compactIndex();
+        } finally {
+            writeLock.unlock();
+        }
     }
 
-    private void saveIndex() {
-        if (indexFile == null || index == null) return;
+    /**
+     * Write the whole index to index.json and clear the journal. Must hold the write lock.
+     */
+    private void compactIndex() {
+        if (indexFile == null) return;
         try {
-            FileUtils.writeText(indexFile, JsonUtils.GSON.toJson(index));
+            Set<LibraryIndex> snapshot = new LinkedHashSet<>();
+            for (Map<String, LibraryIndex> entries : libraries.values())
+                snapshot.addAll(entries.values());
+            Files.createDirectories(indexFile.getParent());
+            FileUtils.saveSafely(indexFile, JsonUtils.GSON.toJson(new Index(snapshot)));
+            journal.clear();
         } catch (IOException e) {
             Logging.LOG.log(Level.SEVERE, "Unable to save index.json", e);
         }
     }
 
+    private static final int MAX_JOURNAL_SIZE = 256;
+
     /**
      * {
      *     "libraries": {
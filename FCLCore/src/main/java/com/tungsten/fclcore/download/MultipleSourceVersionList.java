@@ -19,18 +19,31 @@ package com.tungsten.fclcore.download;
 
 import static com.tungsten.fclcore.util.Logging.LOG;
 
+import com.tungsten.fclcore.util.io.MirrorHealth;
+
+import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 
 public class MultipleSourceVersionList extends VersionList<RemoteVersion> {
 
     private final VersionList<?>[] backends;
+    private final URL[] sources;
 
-    MultipleSourceVersionList(VersionList<?>[] backends) {
+    /**
+     * @param backends version lists to fetch from, in order of preference
+     * @param sources  the server each backend fetches from, or null if unknown.
+     *                 Backends whose servers have been performing better recently are tried first.
+     */
+    MultipleSourceVersionList(VersionList<?>[] backends, URL[] sources) {
         this.backends = backends;
+        this.sources = sources;
 
         assert (backends.length >= 1);
+        assert (backends.length == sources.length);
     }
 
     @Override
@@ -50,8 +63,10 @@ public class MultipleSourceVersionList extends VersionList<RemoteVersion> {
         throw new UnsupportedOperationException("MultipleSourceVersionList does not support loading the entire remote version list.");
     }
 
-    private CompletableFuture<?> refreshAsync(String gameVersion, int sourceIndex) {
+    private CompletableFuture<?> refreshAsync(String gameVersion, List<Integer> order, int position) {
+        int sourceIndex = order.get(position);
         VersionList<?> versionList = backends[sourceIndex];
+        URL source = sources[sourceIndex];
         CompletableFuture<Void> future = versionList.refreshAsync(gameVersion)
                 .thenRunAsync(() -> {
                     lock.writeLock().lock();
@@ -63,7 +78,16 @@ public class MultipleSourceVersionList extends VersionList<RemoteVersion> {
                     }
                 });
 
-        if (sourceIndex == backends.length - 1) {
+        if (source != null) {
+            future.whenComplete((ignore, e) -> {
+                if (e == null)
+                    MirrorHealth.recordSuccess(source);
+                else
+                    MirrorHealth.recordFailure(source);
+            });
+        }
+
+        if (position == order.size() - 1) {
             return future;
         } else {
             return future.<CompletableFuture<?>>handle((ignore, e) -> {
@@ -72,7 +96,7 @@ public class MultipleSourceVersionList extends VersionList<RemoteVersion> {
                 }
 
                 LOG.log(Level.WARNING, "Failed to fetch versions list and try to fetch from other source", e);
-                return refreshAsync(gameVersion, sourceIndex + 1);
+                return refreshAsync(gameVersion, order, position + 1);
             }).thenCompose(it -> it);
         }
     }
@@ -80,6 +104,10 @@ public class MultipleSourceVersionList extends VersionList<RemoteVersion> {
     @Override
     public CompletableFuture<?> refreshAsync(String gameVersion) {
         versions.clear(gameVersion);
-        return refreshAsync(gameVersion, 0);
+
+        List<Integer> order = new ArrayList<>(backends.length);
+        for (int i = 0; i < backends.length; i++)
+            order.add(i);
+        return refreshAsync(gameVersion, MirrorHealth.sort(order, i -> sources[i]), 0);
     }
 }
@@ -60,6 +60,7 @@ public final class GameDownloadTask extends Task<Void> {
                 FileDownloadTask.IntegrityCheck.of(CacheRepository.SHA1, version.getDownloadInfo().getSha1()));
         task.setCaching(true);
         task.setCacheRepository(dependencyManager.getCacheRepository());
+        task.setExpectedSize(version.getDownloadInfo().getSize());
 
         if (gameVersion != null)
             task.setCandidate(dependencyManager.getCacheRepository().getCommonDirectory().resolve("jars").resolve(gameVersion + ".jar"));
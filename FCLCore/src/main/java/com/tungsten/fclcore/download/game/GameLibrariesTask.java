@@ -18,16 +18,16 @@
 package com.tungsten.fclcore.download.game;
 
 import com.tungsten.fclcore.download.AbstractDependencyManager;
+import com.tungsten.fclcore.download.DefaultCacheRepository;
 import com.tungsten.fclcore.download.LibraryAnalyzer;
 import com.tungsten.fclcore.game.GameRepository;
 import com.tungsten.fclcore.game.Library;
 import com.tungsten.fclcore.game.Version;
-import com.tungsten.fclcore.task.FileDownloadTask;
+import com.tungsten.fclcore.task.Schedulers;
 import com.tungsten.fclcore.task.Task;
 import com.tungsten.fclcore.util.LibFilter;
-import com.tungsten.fclcore.util.Logging;
+import com.tungsten.fclcore.util.Pair;
 import com.tungsten.fclcore.util.io.CompressingUtils;
-import com.tungsten.fclcore.util.io.FileUtils;
 import com.tungsten.fclcore.util.versioning.GameVersionNumber;
 import com.tungsten.fclcore.util.versioning.VersionNumber;
 
@@ -37,8 +37,12 @@ import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.logging.Level;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static com.tungsten.fclcore.util.Pair.pair;
 
 /**
  * This task is to download game libraries.
@@ -82,39 +86,19 @@ public final class GameLibrariesTask extends Task<Void> {
         return dependencies;
     }
 
+    /**
+     * Check the library file as downloaded files are checked: its digests, and for jars, that they can be opened as zip files.
+     * Digests are not taken from the record of verified libraries.
+     */
     public static boolean shouldDownloadLibrary(GameRepository gameRepository, Version version, Library library, boolean integrityCheck) {
         File file = gameRepository.getLibraryFile(version, library);
-        Path jar = file.toPath();
-        if (!file.isFile()) return true;
-
-        if (!integrityCheck) {
-            return false;
-        }
-        try {
-            if (!library.getDownload().validateChecksum(jar, true)) {
-                return true;
-            }
-            if (library.getChecksums() != null && !library.getChecksums().isEmpty() && !LibraryDownloadTask.checksumValid(file, library.getChecksums())) {
-                return true;
-            }
-            if (FileUtils.getExtension(file).equals("jar")) {
-                try {
-                    FileDownloadTask.ZIP_INTEGRITY_CHECK_HANDLER.checkIntegrity(jar, jar);
-                } catch (IOException ignored) {
-                    // the Jar file is malformed, so re-download it.
-                    return true;
-                }
-            }
-        } catch (IOException e) {
-            Logging.LOG.log(Level.WARNING, "Unable to calc hash value of file " + jar, e);
-        }
-
-        return false;
+        return LibraryVerifier.untrusted().verify(library, file.toPath(), integrityCheck).shouldDownload();
     }
 
     @Override
     public void execute() throws IOException {
         GameRepository gameRepository = dependencyManager.getGameRepository();
+        List<Library> applicable = new ArrayList<>();
         for (Library library : libraries) {
             if (!library.appliesToCurrentEnvironment()) {
                 continue;
@@ -132,12 +116,36 @@ public final class GameLibrariesTask extends Task<Void> {
                     }
                 }
             }
-            if (shouldDownloadLibrary(gameRepository, version, library, integrityCheck) && (library.hasDownloadURL() || !"optifine".equals(library.getGroupId()))) {
+            applicable.add(library);
+        }
+
+        // Verify libraries concurrently, the number of files read at the same time is bounded by the I/O pool
+        DefaultCacheRepository cacheRepository = dependencyManager.getCacheRepository();
+        LibraryVerifier verifier = LibraryVerifier.load(cacheRepository.getCacheDirectory().resolve(VERIFIED_LIBRARIES_RECORD));
+        List<CompletableFuture<LibraryVerifier.Result>> results = new ArrayList<>(applicable.size());
+        for (Library library : applicable) {
+            Path file = gameRepository.getLibraryFile(version, library).toPath();
+            results.add(CompletableFuture.supplyAsync(() -> verifier.verify(library, file, integrityCheck), Schedulers.io()));
+        }
+
+        List<Pair<Library, Path>> intact = new ArrayList<>();
+        Map<Path, String> hashes = new HashMap<>();
+        for (int i = 0; i < applicable.size(); i++) {
+            Library library = applicable.get(i);
+            File file = gameRepository.getLibraryFile(version, library);
+            LibraryVerifier.Result result = results.get(i).join();
+            if (result.shouldDownload() && (library.hasDownloadURL() || !"optifine".equals(library.getGroupId()))) {
                 dependencies.add(new LibraryDownloadTask(dependencyManager, file, library));
             } else {
-                dependencyManager.getCacheRepository().tryCacheLibrary(library, file.toPath());
+                intact.add(pair(library, file.toPath()));
+                if (result.getSha1() != null)
+                    hashes.put(file.toPath(), result.getSha1());
             }
         }
+        verifier.save();
+
+        cacheRepository.tryCacheLibraries(intact, hashes);
     }
 
+    private static final String VERIFIED_LIBRARIES_RECORD = "verified_libraries.json";
 }
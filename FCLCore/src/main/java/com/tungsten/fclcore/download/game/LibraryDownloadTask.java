@@ -28,7 +28,9 @@ import com.tungsten.fclcore.task.DownloadException;
 import com.tungsten.fclcore.task.FileDownloadTask;
 import com.tungsten.fclcore.task.Task;
 import com.tungsten.fclcore.util.DigestUtils;
+import com.tungsten.fclcore.util.Hex;
 import com.tungsten.fclcore.util.Pack200Utils;
+import com.tungsten.fclcore.util.io.CompressingUtils;
 import com.tungsten.fclcore.util.io.FileUtils;
 import com.tungsten.fclcore.util.io.IOUtils;
 import com.tungsten.fclcore.util.io.NetworkUtils;
@@ -37,14 +39,19 @@ import org.tukaani.xz.XZInputStream;
 
 import java.io.*;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 import java.util.*;
 import java.util.concurrent.CancellationException;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
-import java.util.jar.JarOutputStream;
 import java.util.logging.Level;
 
 public class LibraryDownloadTask extends Task<Void> {
@@ -103,7 +110,11 @@ public class LibraryDownloadTask extends Task<Void> {
             else
                 throw new LibraryDownloadException(library, t);
         } else {
-            if (xz) unpackLibrary(jar, Files.readAllBytes(xzFile.toPath()));
+            if (xz) {
+                unpackLibrary(jar, xzFile.toPath());
+                if (!checksumValid(jar, library.getChecksums()))
+                    throw new ArtifactMalformedException("Library " + jar + " is malformed");
+            }
         }
     }
 
@@ -140,6 +151,7 @@ public class LibraryDownloadTask extends Task<Void> {
             task.setCacheRepository(cacheRepository);
             task.setCaching(true);
             task.addIntegrityCheckHandler(FileDownloadTask.ZIP_INTEGRITY_CHECK_HANDLER);
+            task.setExpectedSize(library.getDownload().getSize());
             xz = false;
         }
     }
@@ -183,10 +195,9 @@ public class LibraryDownloadTask extends Task<Void> {
             if (checksums == null || checksums.isEmpty()) {
                 return true;
             }
-            byte[] fileData = Files.readAllBytes(libPath.toPath());
-            boolean valid = checksums.contains(DigestUtils.digestToString("SHA-1", fileData));
+            boolean valid = checksums.contains(DigestUtils.digestToString("SHA-1", libPath.toPath()));
             if (!valid && libPath.getName().endsWith(".jar")) {
-                valid = validateJar(fileData, checksums);
+                valid = validateJar(libPath.toPath(), checksums);
             }
             return valid;
         } catch (IOException e) {
@@ -195,22 +206,23 @@ public class LibraryDownloadTask extends Task<Void> {
         return false;
     }
 
-    private static boolean validateJar(byte[] data, List<String> checksums) throws IOException {
+    private static boolean validateJar(Path jarFile, List<String> checksums) throws IOException {
         HashMap<String, String> files = new HashMap<>();
         String[] hashes = null;
-        JarInputStream jar = new JarInputStream(new ByteArrayInputStream(data));
-        JarEntry entry = jar.getNextJarEntry();
-        while (entry != null) {
-            byte[] eData = IOUtils.readFullyWithoutClosing(jar);
-            if (entry.getName().equals("checksums.sha1")) {
-                hashes = new String(eData, StandardCharsets.UTF_8).split("\n");
-            }
-            if (!entry.isDirectory()) {
-                files.put(entry.getName(), DigestUtils.digestToString("SHA-1", eData));
+        try (JarInputStream jar = new JarInputStream(new BufferedInputStream(Files.newInputStream(jarFile)))) {
+            JarEntry entry = jar.getNextJarEntry();
+            while (entry != null) {
+                if (entry.getName().equals("checksums.sha1")) {
+                    byte[] eData = IOUtils.readFullyWithoutClosing(jar);
+                    hashes = new String(eData, StandardCharsets.UTF_8).split("\n");
+                    files.put(entry.getName(), DigestUtils.digestToString("SHA-1", eData));
+                } else if (!entry.isDirectory()) {
+                    // Hash the entry while it is being inflated, without holding it in memory
+                    files.put(entry.getName(), Hex.encodeHex(DigestUtils.updateDigest(DigestUtils.getDigest("SHA-1"), jar).digest()));
+                }
+                entry = jar.getNextJarEntry();
             }
-            entry = jar.getNextJarEntry();
         }
-        jar.close();
         if (hashes != null) {
             boolean failed = !checksums.contains(files.get("checksums.sha1"));
             if (!failed) {
@@ -237,41 +249,74 @@ public class LibraryDownloadTask extends Task<Void> {
         return false;
     }
 
-    private static void unpackLibrary(File dest, byte[] src) throws IOException {
+    /**
+     * Decompress a .pack.xz library, unpack it and add the checksums it carries to the jar.
+     * The library is streamed through temporary files, only the checksums are held in memory.
+     */
+    private static void unpackLibrary(File dest, Path src) throws IOException {
         if (dest.exists())
             if (!dest.delete())
                 throw new IOException("Unable to delete file " + dest);
 
-        byte[] decompressed;
+        Path temp = Files.createTempFile("minecraft", ".pack");
         try {
-            decompressed = IOUtils.readFullyAsByteArray(new XZInputStream(new ByteArrayInputStream(src)));
-        } catch (IOException e) {
-            throw new ArtifactMalformedException("Library " + dest + " is malformed");
-        }
+            try (InputStream in = new XZInputStream(new BufferedInputStream(Files.newInputStream(src)));
+                 OutputStream out = Files.newOutputStream(temp)) {
+                byte[] buffer = new byte[IOUtils.DEFAULT_BUFFER_SIZE];
+                while (true) {
+                    int len;
+                    try {
+                        len = in.read(buffer);
+                    } catch (IOException e) {
+                        throw new ArtifactMalformedException("Library " + dest + " is malformed");
+                    }
+                    if (len == -1) break;
+                    out.write(buffer, 0, len);
+                }
+            }
 
-        String end = new String(decompressed, decompressed.length - 4, 4);
-        if (!end.equals("SIGN"))
-            throw new IOException("Unpacking failed, signature missing " + end);
+            // The pack is followed by the checksums, their length and "SIGN"
+            byte[] checksums;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long size = channel.size();
+                if (size < 8)
+                    throw new IOException("Unpacking failed, signature missing");
 
-        int x = decompressed.length;
-        int len = decompressed[(x - 8)] & 0xFF | (decompressed[(x - 7)] & 0xFF) << 8 | (decompressed[(x - 6)] & 0xFF) << 16 | (decompressed[(x - 5)] & 0xFF) << 24;
+                ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, trailer, size - 8);
+                String end = new String(trailer.array(), 4, 4);
+                if (!end.equals("SIGN"))
+                    throw new IOException("Unpacking failed, signature missing " + end);
 
-        Path temp = Files.createTempFile("minecraft", ".pack");
+                int len = trailer.getInt(0);
+                if (len < 0 || len > size - 8)
+                    throw new IOException("Unpacking failed, malformed checksums length " + len);
 
-        byte[] checksums = Arrays.copyOfRange(decompressed, decompressed.length - len - 8, decompressed.length - 8);
+                ByteBuffer checksumsBuffer = ByteBuffer.allocate(len);
+                readFully(channel, checksumsBuffer, size - len - 8);
+                checksums = checksumsBuffer.array();
 
-        try (OutputStream out = Files.newOutputStream(temp)) {
-            out.write(decompressed, 0, decompressed.length - len - 8);
-        }
+                channel.truncate(size - len - 8);
+            }
 
-        try (FileOutputStream jarBytes = new FileOutputStream(dest); JarOutputStream jos = new JarOutputStream(jarBytes)) {
             Pack200Utils.unpack(FCLPath.NATIVE_LIB_DIR, temp.toAbsolutePath().toString(), dest.getAbsolutePath());
+            if (!dest.isFile())
+                throw new IOException("Unpacking failed, " + dest + " not created");
+
+            try (FileSystem jar = CompressingUtils.createWritableZipFileSystem(dest.toPath())) {
+                Path checksumsFile = jar.getPath("checksums.sha1");
+                Files.write(checksumsFile, checksums);
+                Files.setLastModifiedTime(checksumsFile, FileTime.fromMillis(0L));
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
 
-            JarEntry checksumsFile = new JarEntry("checksums.sha1");
-            checksumsFile.setTime(0L);
-            jos.putNextEntry(checksumsFile);
-            jos.write(checksums);
-            jos.closeEntry();
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException();
         }
     }
 }
@@ -0,0 +1,202 @@
+package com.tungsten.fclcore.download.game;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.tungsten.fclcore.game.Library;
+import com.tungsten.fclcore.task.FileDownloadTask;
+import com.tungsten.fclcore.util.DigestUtils;
+import com.tungsten.fclcore.util.Logging;
+import com.tungsten.fclcore.util.gson.JsonUtils;
+import com.tungsten.fclcore.util.io.CompressingUtils;
+import com.tungsten.fclcore.util.io.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * Decides whether library files on disk are intact.
+ *
+ * The SHA-1 of every file that passes verification is recorded together with its size and modification time.
+ * As long as a file keeps the same size and modification time, the recorded digest is trusted instead of
+ * hashing the file again. Records of files which no longer exist are dropped when the record is loaded.
+ *
+ * Verifiers with a record only check jars for a well-formed end of central directory, since a jar whose digest
+ * matches the expected one is intact anyway. {@link #untrusted() Untrusted} verifiers open jars as zip files,
+ * like {@link FileDownloadTask#ZIP_INTEGRITY_CHECK_HANDLER} does after a download.
+ *
+ * Instances are safe for concurrent use.
+ */
+final class LibraryVerifier {
+
+    private final Path recordFile;
+    private final Map<String, TrustedDigest> trusted;
+    private volatile boolean changed;
+
+    private LibraryVerifier(Path recordFile, Map<String, TrustedDigest> trusted, boolean changed) {
+        this.recordFile = recordFile;
+        this.trusted = trusted;
+        this.changed = changed;
+    }
+
+    /**
+     * @return a verifier which hashes every file and fully checks jars
+     */
+    static LibraryVerifier untrusted() {
+        return new LibraryVerifier(null, new ConcurrentHashMap<>(), false);
+    }
+
+    /**
+     * @param recordFile where digests of verified files are kept between runs
+     */
+    static LibraryVerifier load(Path recordFile) {
+        Map<String, TrustedDigest> trusted = new ConcurrentHashMap<>();
+        boolean changed = false;
+        if (Files.isRegularFile(recordFile)) {
+            try {
+                Map<String, TrustedDigest> record = JsonUtils.GSON.fromJson(FileUtils.readText(recordFile), new TypeToken<Map<String, TrustedDigest>>() {
+                }.getType());
+                if (record != null) {
+                    record.forEach((path, digest) -> {
+                        if (path != null && digest != null && digest.sha1 != null && Files.exists(Paths.get(path)))
+                            trusted.put(path, digest);
+                    });
+                    changed = trusted.size() != record.size();
+                }
+            } catch (IOException | JsonParseException e) {
+                Logging.LOG.log(Level.WARNING, "Unable to read verified libraries record " + recordFile, e);
+            }
+        }
+        return new LibraryVerifier(recordFile, trusted, changed);
+    }
+
+    /**
+     * @param file           the library file
+     * @param integrityCheck false to only check that the file exists
+     * @return the result, never null
+     */
+    Result verify(Library library, Path file, boolean integrityCheck) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return Result.MISSING;
+        } catch (IOException e) {
+            Logging.LOG.log(Level.WARNING, "Unable to read attributes of " + file, e);
+            return Result.MISSING;
+        }
+        if (!attributes.isRegularFile())
+            return Result.MISSING;
+
+        if (!integrityCheck)
+            return Result.UNVERIFIED;
+
+        String key = file.toAbsolutePath().normalize().toString();
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String expected = library.getDownload().getSha1();
+        List<String> checksums = library.getChecksums();
+
+        TrustedDigest digest = trusted.get(key);
+        if (digest != null && digest.size == size && digest.lastModified == lastModified) {
+            if ((expected == null || expected.equalsIgnoreCase(digest.sha1))
+                    && (checksums == null || checksums.isEmpty() || checksums.contains(digest.sha1) || digest.checksumsVerified))
+                return new Result(false, digest.sha1);
+        }
+
+        try {
+            String sha1 = DigestUtils.digestToString("SHA-1", file);
+            if (expected != null && !expected.equalsIgnoreCase(sha1))
+                return Result.CORRUPTED;
+
+            boolean checksumsVerified = false;
+            if (checksums != null && !checksums.isEmpty() && !checksums.contains(sha1)) {
+                if (!LibraryDownloadTask.checksumValid(file.toFile(), checksums))
+                    return Result.CORRUPTED;
+                checksumsVerified = true;
+            }
+
+            if (FileUtils.getExtension(file).equals("jar")) {
+                try {
+                    if (recordFile == null)
+                        FileDownloadTask.ZIP_INTEGRITY_CHECK_HANDLER.checkIntegrity(file, file);
+                    else
+                        CompressingUtils.checkZipStructure(file);
+                } catch (IOException ignored) {
+                    // the Jar file is malformed, so re-download it.
+                    return Result.CORRUPTED;
+                }
+            }
+
+            if (recordFile != null) {
+                trusted.put(key, new TrustedDigest(size, lastModified, sha1, checksumsVerified));
+                changed = true;
+            }
+            return new Result(false, sha1);
+        } catch (IOException e) {
+            Logging.LOG.log(Level.WARNING, "Unable to calc hash value of file " + file, e);
+            return Result.UNVERIFIED;
+        }
+    }
+
+    /**
+     * Write the record if files have been verified since it was loaded.
+     */
+    void save() {
+        if (recordFile == null || !changed)
+            return;
+        try {
+            Files.createDirectories(recordFile.getParent());
+            FileUtils.saveSafely(recordFile, JsonUtils.GSON.toJson(trusted));
+            changed = false;
+        } catch (IOException e) {
+            Logging.LOG.log(Level.WARNING, "Unable to save verified libraries record " + recordFile, e);
+        }
+    }
+
+    static final class Result {
+        static final Result MISSING = new Result(true, null);
+        static final Result CORRUPTED = new Result(true, null);
+        static final Result UNVERIFIED = new Result(false, null);
+
+        private final boolean download;
+        private final String sha1;
+
+        Result(boolean download, String sha1) {
+            this.download = download;
+            this.sha1 = sha1;
+        }
+
+        boolean shouldDownload() {
+            return download;
+        }
+
+        /**
+         * @return SHA-1 of the verified file, or null if it has not been verified
+         */
+        String getSha1() {
+            return sha1;
+        }
+    }
+
+    private static final class TrustedDigest {
+        private final long size;
+        private final long lastModified;
+        private final String sha1;
+        private final boolean checksumsVerified;
+
+        TrustedDigest(long size, long lastModified, String sha1, boolean checksumsVerified) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.sha1 = sha1;
+            this.checksumsVerified = checksumsVerified;
+        }
+    }
+}
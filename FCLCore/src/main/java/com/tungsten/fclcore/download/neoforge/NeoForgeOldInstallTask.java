@@ -74,53 +74,17 @@ public class NeoForgeOldInstallTask extends Task<Version> {
 
         private final ForgeNewInstallProfile.Processor processor;
         private final Map<String, String> vars;
+        private final Map<String, String> outputs;
 
-        public ProcessorTask(@NotNull ForgeNewInstallProfile.Processor processor, @NotNull Map<String, String> vars) {
+        public ProcessorTask(@NotNull ForgeNewInstallProfile.Processor processor, @NotNull Map<String, String> vars, @NotNull Map<String, String> outputs) {
             this.processor = processor;
             this.vars = vars;
+            this.outputs = outputs;
             setSignificance(TaskSignificance.MODERATE);
         }
 
         @Override
         public void execute() throws Exception {
-            Map<String, String> outputs = new HashMap<>();
-            boolean miss = false;
-
-            for (Map.Entry<String, String> entry : processor.getOutputs().entrySet()) {
-                String key = entry.getKey();
-                String value = entry.getValue();
-
-                key = parseLiteral(key, vars);
-                value = parseLiteral(value, vars);
-
-                if (key == null || value == null) {
-                    throw new ArtifactMalformedException("Invalid forge installation configuration");
-                }
-
-                outputs.put(key, value);
-
-                Path artifact = Paths.get(key);
-                if (Files.exists(artifact)) {
-                    String code;
-                    try (InputStream stream = Files.newInputStream(artifact)) {
-                        code = (DigestUtils.digestToString("SHA-1", stream));
-                    }
-
-                    if (!Objects.equals(code, value)) {
-                        Files.delete(artifact);
-                        LOG.info("Found existing file is not valid: " + artifact);
-
-                        miss = true;
-                    }
-                } else {
-                    miss = true;
-                }
-            }
-
-            if (!processor.getOutputs().isEmpty() && !miss) {
-                return;
-            }
-
             Path jar = gameRepository.getArtifactFile(version, processor.getJar());
             if (!Files.isRegularFile(jar))
                 throw new FileNotFoundException("Game processor file not found, should be downloaded in preprocess");
@@ -299,6 +263,51 @@ public class NeoForgeOldInstallTask extends Task<Version> {
         return parseLiteral(literal, var, ExceptionalFunction.identity());
     }
 
+    private Map<String, String> parseOutputs(ForgeNewInstallProfile.Processor processor, Map<String, String> vars) throws ArtifactMalformedException {
+        Map<String, String> outputs = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : processor.getOutputs().entrySet()) {
+            String key = parseLiteral(entry.getKey(), vars);
+            String value = parseLiteral(entry.getValue(), vars);
+
+            if (key == null || value == null) {
+                throw new ArtifactMalformedException("Invalid forge installation configuration");
+            }
+
+            outputs.put(key, value);
+        }
+        return outputs;
+    }
+
+    /**
+     * Check whether all outputs of a processor already exist with the expected SHA-1.
+     * Existing outputs with a wrong checksum are deleted so the processor will regenerate them.
+     *
+     * @param outputs parsed output file paths mapped to their expected SHA-1
+     * @return true if every output is present and valid, false if the processor has to run
+     */
+    private static boolean verifyProcessorOutputs(Map<String, String> outputs) throws IOException {
+        boolean valid = true;
+        for (Map.Entry<String, String> entry : outputs.entrySet()) {
+            Path artifact = Paths.get(entry.getKey());
+            if (!Files.isRegularFile(artifact)) {
+                valid = false;
+                continue;
+            }
+
+            String code;
+            try (InputStream stream = Files.newInputStream(artifact)) {
+                code = DigestUtils.digestToString("SHA-1", stream);
+            }
+
+            if (!Objects.equals(code, entry.getValue())) {
+                Files.delete(artifact);
+                LOG.info("Found existing file is not valid: " + artifact);
+                valid = false;
+            }
+        }
+        return valid;
+    }
+
     @Override
     public Collection<Task<?>> getDependents() {
         return dependents;
@@ -397,16 +406,45 @@ public class NeoForgeOldInstallTask extends Task<Version> {
                 });
     }
 
-    private Task<?> createProcessorTask(ForgeNewInstallProfile.Processor processor, Map<String, String> vars) {
+    private Task<?> createProcessorTask(ForgeNewInstallProfile.Processor processor, Map<String, String> vars, Map<String, String> outputs) {
         Task<?> task = patchDownloadMojangMappingsTask(processor, vars);
         if (task == null) {
-            task = new ProcessorTask(processor, vars);
+            task = new ProcessorTask(processor, vars, outputs);
         }
-        task.onDone().register(
-                () -> updateProgress(processorDoneCount.incrementAndGet(), processors.size()));
         return task;
     }
 
+    /**
+     * Create tasks for processors that have to run, skipping those whose outputs are already valid.
+     * Processors without declared outputs may only produce intermediate files for later processors,
+     * so they are skipped only if later processors have all been skipped for valid outputs.
+     * Otherwise, including when no later processor declares outputs, they are run.
+     */
+    private List<Task<?>> createProcessorTasks(Map<String, String> vars) throws IOException {
+        LinkedList<Task<?>> tasks = new LinkedList<>();
+        boolean laterProcessorRequired = false;
+        boolean laterProcessorVerified = false;
+        for (int i = processors.size() - 1; i >= 0; i--) {
+            ForgeNewInstallProfile.Processor processor = processors.get(i);
+            Map<String, String> outputs = parseOutputs(processor, vars);
+
+            if (outputs.isEmpty()) {
+                if (laterProcessorVerified && !laterProcessorRequired) {
+                    LOG.info("Skipping processor " + processor.getJar() + ", later outputs are up to date");
+                    continue;
+                }
+            } else if (verifyProcessorOutputs(outputs)) {
+                LOG.info("Skipping processor " + processor.getJar() + ", outputs are up to date");
+                laterProcessorVerified = true;
+                continue;
+            }
+
+            laterProcessorRequired = true;
+            tasks.addFirst(createProcessorTask(processor, vars, outputs));
+        }
+        return tasks;
+    }
+
     @Override
     public void execute() throws Exception {
         tempDir = Files.createTempDirectory("neoforge_installer");
@@ -437,12 +475,16 @@ public class NeoForgeOldInstallTask extends Task<Version> {
         vars.put("INSTALLER", installer.toAbsolutePath().toString());
         vars.put("LIBRARY_DIR", gameRepository.getLibrariesDirectory(version).getAbsolutePath());
 
-        updateProgress(0, processors.size());
+        List<Task<?>> processorTasks = createProcessorTasks(vars);
+        int processorTaskCount = processorTasks.size();
+        for (Task<?> task : processorTasks) {
+            task.onDone().register(
+                    () -> updateProgress(processorDoneCount.incrementAndGet(), processorTaskCount));
+        }
+        if (processorTaskCount > 0)
+            updateProgress(0, processorTaskCount);
 
-        Task<?> processorsTask = Task.runSequentially(
-                processors.stream()
-                        .map(processor -> createProcessorTask(processor, vars))
-                        .toArray(Task<?>[]::new));
+        Task<?> processorsTask = Task.runSequentially(processorTasks.toArray(new Task<?>[0]));
 
         dependencies.add(
                 processorsTask.thenComposeAsync(
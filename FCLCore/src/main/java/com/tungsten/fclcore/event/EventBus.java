@@ -20,21 +20,38 @@ package com.tungsten.fclcore.event;
 import com.tungsten.fclcore.util.Logging;
 
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
 
 public final class EventBus {
 
     private final ConcurrentHashMap<Class<?>, EventManager<?>> events = new ConcurrentHashMap<>();
+    private volatile boolean debugLogging = false;
 
     @SuppressWarnings("unchecked")
     public <T extends Event> EventManager<T> channel(Class<T> clazz) {
         return (EventManager<T>) events.computeIfAbsent(clazz, ignored -> new EventManager<>());
     }
 
+    /**
+     * Log every fired event. Disabled by default since busy tasks fire events continuously.
+     */
+    public void setDebugLogging(boolean debugLogging) {
+        this.debugLogging = debugLogging;
+    }
+
     @SuppressWarnings("unchecked")
     public Event.Result fireEvent(Event obj) {
-        Logging.LOG.info(obj + " gets fired");
+        if (debugLogging)
+            Logging.LOG.log(Level.FINE, obj + " gets fired");
+
+        EventManager<Event> manager = (EventManager<Event>) events.get(obj.getClass());
+        if (manager != null)
+            return manager.fireEvent(obj);
 
-        return channel((Class<Event>) obj.getClass()).fireEvent(obj);
+        if (obj.hasResult())
+            return obj.getResult();
+        else
+            return Event.Result.DEFAULT;
     }
 
     public static final EventBus EVENT_BUS = new EventBus();
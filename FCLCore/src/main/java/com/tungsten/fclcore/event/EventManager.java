@@ -20,14 +20,24 @@ package com.tungsten.fclcore.event;
 import com.tungsten.fclcore.util.SimpleMultimap;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.EnumMap;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.function.Consumer;
 
 public final class EventManager<T extends Event> {
 
-    private final SimpleMultimap<EventPriority, Consumer<T>, CopyOnWriteArraySet<Consumer<T>>> handlers
-            = new SimpleMultimap<>(() -> new EnumMap<>(EventPriority.class), CopyOnWriteArraySet::new);
+    private static final Consumer<?>[] NO_HANDLERS = new Consumer<?>[0];
+
+    private final SimpleMultimap<EventPriority, Consumer<T>, LinkedHashSet<Consumer<T>>> handlers
+            = new SimpleMultimap<>(() -> new EnumMap<>(EventPriority.class), LinkedHashSet::new);
+
+    /**
+     * All handlers in the order of their priority, replaced on every change.
+     * Firing an event only reads this array, so it never waits for registrations.
+     */
+    private volatile Consumer<?>[] snapshot = NO_HANDLERS;
 
     public Consumer<T> registerWeak(Consumer<T> consumer) {
         register(new WeakListener(consumer));
@@ -44,8 +54,10 @@ public final class EventManager<T extends Event> {
     }
 
     public synchronized void register(Consumer<T> consumer, EventPriority priority) {
-        if (!handlers.get(priority).contains(consumer))
+        if (!handlers.get(priority).contains(consumer)) {
             handlers.put(priority, consumer);
+            updateSnapshot();
+        }
     }
 
     public void register(Runnable runnable) {
@@ -56,11 +68,10 @@ public final class EventManager<T extends Event> {
         register(t -> runnable.run(), priority);
     }
 
-    public synchronized Event.Result fireEvent(T event) {
-        for (EventPriority priority : EventPriority.values()) {
-            for (Consumer<T> handler : handlers.get(priority))
-                handler.accept(event);
-        }
+    @SuppressWarnings("unchecked")
+    public Event.Result fireEvent(T event) {
+        for (Consumer<?> handler : snapshot)
+            ((Consumer<T>) handler).accept(event);
 
         if (event.hasResult())
             return event.getResult();
@@ -69,7 +80,15 @@ public final class EventManager<T extends Event> {
     }
 
     public synchronized void unregister(Consumer<T> consumer) {
-        handlers.removeValue(consumer);
+        if (handlers.removeValue(consumer))
+            updateSnapshot();
+    }
+
+    private void updateSnapshot() {
+        List<Consumer<T>> all = new ArrayList<>();
+        for (EventPriority priority : EventPriority.values())
+            all.addAll(handlers.get(priority));
+        snapshot = all.isEmpty() ? NO_HANDLERS : all.toArray(new Consumer<?>[0]);
     }
 
     private class WeakListener implements Consumer<T> {
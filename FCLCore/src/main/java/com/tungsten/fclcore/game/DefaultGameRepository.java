@@ -27,6 +27,7 @@ import com.tungsten.fclcore.event.*;
 import com.tungsten.fclcore.game.tlauncher.TLauncherVersion;
 import com.tungsten.fclcore.mod.ModManager;
 import com.tungsten.fclcore.mod.ModpackConfiguration;
+import com.tungsten.fclcore.task.Schedulers;
 import com.tungsten.fclcore.task.Task;
 import com.tungsten.fclcore.util.Lang;
 import com.tungsten.fclcore.util.ToStringBuilder;
@@ -266,7 +267,8 @@ public class DefaultGameRepository implements GameRepository {
 
         File[] files = new File(getBaseDirectory(), "versions").listFiles();
         if (files != null)
-            Arrays.stream(files).parallel().filter(File::isDirectory).flatMap(dir -> {
+            // Run the parallel stream in the computation pool instead of the common pool
+            Schedulers.computation().submit(() -> Arrays.stream(files).parallel().filter(File::isDirectory).flatMap(dir -> {
                 String id = dir.getName();
                 File json = new File(dir, id + ".json");
 
@@ -314,7 +316,7 @@ public class DefaultGameRepository implements GameRepository {
                 }
 
                 return Stream.of(version);
-            }).forEachOrdered(provider::addVersion);
+            }).forEachOrdered(provider::addVersion)).join();
 
         for (Version version : provider.getVersionMap().values()) {
             try {
@@ -455,6 +457,16 @@ public class DefaultGameRepository implements GameRepository {
         return new File(getVersionRoot(version), "modpack.json");
     }
 
+    /**
+     * The index of files unpacked from modpack overrides, used to detect user modifications on upgrade.
+     *
+     * @param version version installed as modpack
+     * @return the index file, may not exist.
+     */
+    public File getModpackInstalledFiles(String version) {
+        return new File(getVersionRoot(version), "modpack-files.json");
+    }
+
     /**
      * read modpack configuration for a version.
      *
@@ -477,6 +489,76 @@ public class DefaultGameRepository implements GameRepository {
         return getModpackConfiguration(version).exists();
     }
 
+    /**
+     * SHA-1 of the files versions in this repository are made of: game jars, libraries,
+     * asset indexes and their objects, and files from modpacks.
+     * The cache keeps these when it has to free space.
+     */
+    public Set<String> getReferencedHashes() {
+        return getReferencedHashes(getVersions(), this);
+    }
+
+    /**
+     * Same as {@link #getReferencedHashes()}, but reads the version jsons instead of the loaded versions,
+     * so that it may be used on a repository not loaded. Unlike {@link #refreshVersions()}, nothing is
+     * renamed and no event is fired; malformed version jsons are only logged and skipped.
+     */
+    public Set<String> readReferencedHashes() {
+        SimpleVersionProvider provider = new SimpleVersionProvider();
+        File[] dirs = new File(getBaseDirectory(), "versions").listFiles(File::isDirectory);
+        if (dirs != null) {
+            for (File dir : dirs) {
+                String id = dir.getName();
+                File json = new File(dir, id + ".json");
+                if (!json.isFile())
+                    continue;
+
+                try {
+                    Version version = readVersionJson(json);
+                    if (!id.equals(version.getId()))
+                        version._setId(id);
+                    provider.addVersion(version);
+                } catch (Exception e) {
+                    LOG.log(Level.WARNING, "Malformed version json " + id, e);
+                }
+            }
+        }
+        return getReferencedHashes(provider.getVersionMap().values(), provider);
+    }
+
+    private Set<String> getReferencedHashes(Collection<Version> versions, VersionProvider provider) {
+        Set<String> hashes = new HashSet<>();
+        Set<String> assetIndexes = new HashSet<>();
+        for (Version version : versions) {
+            try {
+                Version resolved = version.resolve(provider);
+                hashes.add(resolved.getDownloadInfo().getSha1());
+                for (Library library : resolved.getLibraries())
+                    hashes.add(library.getDownload().getSha1());
+
+                AssetIndexInfo assetIndexInfo = resolved.getAssetIndex();
+                hashes.add(assetIndexInfo.getSha1());
+                if (assetIndexes.add(assetIndexInfo.getId()) && Files.isRegularFile(getIndexFile(version.getId(), assetIndexInfo.getId()))) {
+                    for (AssetObject assetObject : getAssetIndex(version.getId(), assetIndexInfo.getId()).getObjects().values())
+                        hashes.add(assetObject.getHash());
+                }
+
+                File modpackFile = getModpackConfiguration(version.getId());
+                if (modpackFile.exists()) {
+                    ModpackConfiguration<?> modpack = JsonUtils.GSON.fromJson(FileUtils.readText(modpackFile), new TypeToken<ModpackConfiguration<?>>() {
+                    }.getType());
+                    if (modpack != null)
+                        for (ModpackConfiguration.FileInformation file : modpack.getOverrides())
+                            hashes.add(file.getHash());
+                }
+            } catch (IOException | JsonParseException | VersionNotFoundException e) {
+                LOG.log(Level.WARNING, "Unable to read files of version " + version.getId(), e);
+            }
+        }
+        hashes.remove(null);
+        return hashes;
+    }
+
     public ModManager getModManager(String version) {
         return new ModManager(this, version);
     }
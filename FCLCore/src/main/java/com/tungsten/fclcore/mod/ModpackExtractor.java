@@ -0,0 +1,244 @@
+/*
+ * Hello Minecraft! Launcher
+ * Copyright (C) 2020  huangyuhui <huanghongxun2008@126.com> and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.tungsten.fclcore.mod;
+
+import static com.tungsten.fclcore.util.Lang.threadPool;
+
+import com.tungsten.fclcore.util.DigestUtils;
+import com.tungsten.fclcore.util.Hex;
+import com.tungsten.fclcore.util.StringUtils;
+import com.tungsten.fclcore.util.io.CompressingUtils;
+import com.tungsten.fclcore.util.io.FileUtils;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Extracts sub directories of a modpack archive.
+ *
+ * The archive is opened once, all entries of the requested sub directories are planned up front,
+ * and the planned files are then extracted concurrently, hashing each file while it is written.
+ */
+public final class ModpackExtractor implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ZipFile zipFile;
+
+    public ModpackExtractor(Path modpackFile, Charset encoding) throws IOException {
+        ZipFile zip = CompressingUtils.openZipFile(modpackFile, encoding);
+        if (!CompressingUtils.testEncoding(zip, encoding)) {
+            Charset suitable = CompressingUtils.findSuitableEncoding(zip);
+            zip.close();
+            zip = CompressingUtils.openZipFile(modpackFile, suitable);
+        }
+        this.zipFile = zip;
+    }
+
+    /**
+     * Collect the files to be extracted.
+     *
+     * @param subDirectories sub directories of the archive to extract, like "/overrides".
+     *                       If several sub directories contain the same file, the last one wins.
+     * @param filter         tests whether the file (relative to its sub directory) should be extracted
+     * @return the plan mapping relative paths to zip entries
+     */
+    public Plan plan(List<String> subDirectories, Predicate<String> filter) {
+        List<String> prefixes = new ArrayList<>(subDirectories.size());
+        for (String subDirectory : subDirectories) {
+            String prefix = StringUtils.removePrefix(FileUtils.normalizePath(subDirectory), "/");
+            if (!prefix.isEmpty() && !prefix.endsWith("/"))
+                prefix += "/";
+            prefixes.add(prefix);
+        }
+
+        Plan plan = new Plan();
+        Map<String, Integer> priorities = new HashMap<>();
+        Enumeration<ZipArchiveEntry> entries = zipFile.getEntriesInPhysicalOrder();
+        while (entries.hasMoreElements()) {
+            ZipArchiveEntry entry = entries.nextElement();
+            String name = StringUtils.removePrefix(entry.getName().replace('\\', '/'), "/");
+            for (int i = 0; i < prefixes.size(); i++) {
+                String prefix = prefixes.get(i);
+                if (!name.startsWith(prefix))
+                    continue;
+
+                String relativePath = StringUtils.removeSuffix(name.substring(prefix.length()), "/");
+                if (relativePath.isEmpty() || !isSafePath(relativePath))
+                    continue;
+
+                if (entry.isDirectory()) {
+                    plan.directories.add(relativePath);
+                } else if (filter.test(relativePath)) {
+                    Integer priority = priorities.get(relativePath);
+                    if (priority == null || priority <= i) {
+                        priorities.put(relativePath, i);
+                        plan.files.put(relativePath, entry);
+                    }
+                }
+            }
+        }
+        return plan;
+    }
+
+    private static boolean isSafePath(String relativePath) {
+        for (String part : relativePath.split("/")) {
+            if (part.equals(".."))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Extract files of the plan concurrently.
+     *
+     * @param plan        the plan created by {@link #plan(List, Predicate)}
+     * @param dest        destination directory
+     * @param paths       relative paths of the planned files to extract
+     * @param onProgress  receives the number of extracted files, called on the caller thread
+     * @return records of extracted files, with their SHA-1 and file attributes after extraction
+     */
+    public List<InstalledFile> extract(Plan plan, Path dest, Collection<String> paths, LongConsumer onProgress) throws IOException {
+        for (String directory : plan.directories)
+            Files.createDirectories(dest.resolve(directory));
+
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 4));
+        ExecutorService executor = threadPool("ModpackExtractor", true, threads, 10, TimeUnit.SECONDS);
+        List<Future<InstalledFile>> futures = new ArrayList<>(paths.size());
+        try {
+            for (String path : paths) {
+                ZipArchiveEntry entry = plan.files.get(path);
+                if (entry == null)
+                    throw new IllegalArgumentException("File " + path + " is not planned");
+                Path destFile = dest.resolve(path);
+                futures.add(executor.submit(() -> extractEntry(entry, path, destFile)));
+            }
+
+            List<InstalledFile> installed = new ArrayList<>(futures.size());
+            for (Future<InstalledFile> future : futures) {
+                installed.add(future.get());
+                onProgress.accept(installed.size());
+            }
+            return installed;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            throw new IOException("Unable to extract modpack", cause);
+        } finally {
+            for (Future<InstalledFile> future : futures)
+                future.cancel(true);
+            executor.shutdownNow();
+        }
+    }
+
+    private InstalledFile extractEntry(ZipArchiveEntry entry, String path, Path destFile) throws IOException {
+        Files.createDirectories(destFile.getParent());
+
+        MessageDigest digest = DigestUtils.getDigest("SHA-1");
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream input = zipFile.getInputStream(entry);
+             OutputStream output = Files.newOutputStream(destFile)) {
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+                output.write(buffer, 0, read);
+            }
+        }
+
+        return new InstalledFile(path, Hex.encodeHex(digest.digest()),
+                Files.size(destFile), Files.getLastModifiedTime(destFile).toMillis());
+    }
+
+    @Override
+    public void close() throws IOException {
+        zipFile.close();
+    }
+
+    public static final class Plan {
+        private final Set<String> directories = new LinkedHashSet<>();
+        private final Map<String, ZipArchiveEntry> files = new LinkedHashMap<>();
+
+        /**
+         * @return relative paths of all planned files
+         */
+        public Set<String> getFiles() {
+            return Collections.unmodifiableSet(files.keySet());
+        }
+    }
+
+    /**
+     * A file extracted from a modpack, remembered so that later updates can tell
+     * whether the user modified it without hashing it again.
+     */
+    public static final class InstalledFile {
+        private final String path;
+        private final String hash;
+        private final long size;
+        private final long lastModified;
+
+        public InstalledFile() {
+            this(null, null, 0, 0);
+        }
+
+        public InstalledFile(String path, String hash, long size, long lastModified) {
+            this.path = path;
+            this.hash = hash;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        /**
+         * Check whether the file on disk is still the one written on installation.
+         *
+         * @param file the installed file
+         * @return true if size and modification time did not change since installation
+         */
+        public boolean isUnchanged(Path file) throws IOException {
+            return Files.size(file) == size && Files.getLastModifiedTime(file).toMillis() == lastModified;
+        }
+    }
+}
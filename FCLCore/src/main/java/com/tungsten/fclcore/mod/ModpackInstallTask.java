@@ -17,17 +17,23 @@
  */
 package com.tungsten.fclcore.mod;
 
+import static com.tungsten.fclcore.util.Logging.LOG;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
 import com.tungsten.fclcore.task.Task;
 import com.tungsten.fclcore.util.DigestUtils;
+import com.tungsten.fclcore.util.gson.JsonUtils;
 import com.tungsten.fclcore.util.io.FileUtils;
-import com.tungsten.fclcore.util.io.Unzipper;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.function.Predicate;
+import java.util.logging.Level;
 
 public class ModpackInstallTask<T> extends Task<Void> {
 
@@ -37,6 +43,7 @@ public class ModpackInstallTask<T> extends Task<Void> {
     private final List<String> subDirectories;
     private final List<ModpackConfiguration.FileInformation> overrides;
     private final Predicate<String> callback;
+    private final File installedFilesIndex;
 
     /**
      * Constructor
@@ -46,13 +53,16 @@ public class ModpackInstallTask<T> extends Task<Void> {
      * @param subDirectories the subdirectory of zip file to unpack
      * @param callback test whether the file (given full path) in zip file should be unpacked or not
      * @param oldConfiguration old modpack information if upgrade
+     * @param installedFilesIndex where to remember hashes and attributes of unpacked files, so that
+     *                            user modifications can be detected on upgrade without hashing every file, nullable
      */
-    public ModpackInstallTask(File modpackFile, File dest, Charset charset, List<String> subDirectories, Predicate<String> callback, ModpackConfiguration<T> oldConfiguration) {
+    public ModpackInstallTask(File modpackFile, File dest, Charset charset, List<String> subDirectories, Predicate<String> callback, ModpackConfiguration<T> oldConfiguration, File installedFilesIndex) {
         this.modpackFile = modpackFile;
         this.dest = dest;
         this.charset = charset;
         this.subDirectories = subDirectories;
         this.callback = callback;
+        this.installedFilesIndex = installedFilesIndex;
 
         if (oldConfiguration == null)
             overrides = Collections.emptyList();
@@ -62,7 +72,6 @@ public class ModpackInstallTask<T> extends Task<Void> {
 
     @Override
     public void execute() throws Exception {
-        Set<String> entries = new HashSet<>();
         if (!FileUtils.makeDirectory(dest))
             throw new IOException("Unable to make directory " + dest);
 
@@ -70,32 +79,25 @@ public class ModpackInstallTask<T> extends Task<Void> {
         for (ModpackConfiguration.FileInformation file : overrides)
             files.put(file.getPath(), file);
 
+        Map<String, ModpackExtractor.InstalledFile> installedFiles = readInstalledFiles();
+        Path destPath = dest.toPath();
+
+        Set<String> entries;
+        try (ModpackExtractor extractor = new ModpackExtractor(modpackFile.toPath(), charset)) {
+            ModpackExtractor.Plan plan = extractor.plan(subDirectories, callback);
+            entries = plan.getFiles();
+
+            List<String> toExtract = new ArrayList<>(entries.size());
+            for (String entryPath : entries) {
+                if (shouldExtract(entryPath, destPath.resolve(entryPath), files.get(entryPath), installedFiles.get(entryPath)))
+                    toExtract.add(entryPath);
+            }
+
+            List<ModpackExtractor.InstalledFile> extracted = extractor.extract(plan, destPath, toExtract,
+                    count -> updateProgress(count, toExtract.size()));
 
-        for (String subDirectory : subDirectories) {
-            new Unzipper(modpackFile, dest)
-                    .setSubDirectory(subDirectory)
-                    .setTerminateIfSubDirectoryNotExists()
-                    .setReplaceExistentFile(true)
-                    .setEncoding(charset)
-                    .setFilter((destPath, isDirectory, zipEntry, entryPath) -> {
-                        if (isDirectory) return true;
-                        if (!callback.test(entryPath)) return false;
-                        entries.add(entryPath);
-
-                        if (!files.containsKey(entryPath)) {
-                            // If old modpack does not have this entry, add this entry or override the file that user added.
-                            return true;
-                        } else if (!Files.exists(destPath)) {
-                            // If both old and new modpacks have this entry, but the file is deleted by user, leave it missing.
-                            return false;
-                        } else {
-                            // If both old and new modpacks have this entry, and user has modified this file,
-                            // we will not replace it since this modified file is what user expects.
-                            String fileHash = DigestUtils.digestToString("SHA-1", destPath);
-                            String oldHash = files.get(entryPath).getHash();
-                            return Objects.equals(oldHash, fileHash);
-                        }
-                    }).unzip();
+            for (ModpackExtractor.InstalledFile file : extracted)
+                installedFiles.put(file.getPath(), file);
         }
 
         // If old modpack have this entry, and new modpack deleted it. Delete this file.
@@ -104,5 +106,52 @@ public class ModpackInstallTask<T> extends Task<Void> {
             if (original.exists() && !entries.contains(file.getPath()))
                 original.delete();
         }
+
+        installedFiles.keySet().retainAll(entries);
+        writeInstalledFiles(installedFiles.values());
+    }
+
+    private static boolean shouldExtract(String entryPath, Path destPath, ModpackConfiguration.FileInformation oldFile, ModpackExtractor.InstalledFile installedFile) throws IOException {
+        if (oldFile == null) {
+            // If old modpack does not have this entry, add this entry or override the file that user added.
+            return true;
+        } else if (!Files.exists(destPath)) {
+            // If both old and new modpacks have this entry, but the file is deleted by user, leave it missing.
+            return false;
+        } else if (installedFile != null && installedFile.isUnchanged(destPath)) {
+            // The file is untouched since we unpacked it, no need to hash it again.
+            return Objects.equals(oldFile.getHash(), installedFile.getHash());
+        } else {
+            // If both old and new modpacks have this entry, and user has modified this file,
+            // we will not replace it since this modified file is what user expects.
+            String fileHash = DigestUtils.digestToString("SHA-1", destPath);
+            return Objects.equals(oldFile.getHash(), fileHash);
+        }
+    }
+
+    private Map<String, ModpackExtractor.InstalledFile> readInstalledFiles() {
+        Map<String, ModpackExtractor.InstalledFile> result = new HashMap<>();
+        if (installedFilesIndex == null || !installedFilesIndex.isFile())
+            return result;
+
+        try {
+            List<ModpackExtractor.InstalledFile> list = JsonUtils.GSON.fromJson(FileUtils.readText(installedFilesIndex), new TypeToken<List<ModpackExtractor.InstalledFile>>() {
+            }.getType());
+            if (list != null) {
+                for (ModpackExtractor.InstalledFile file : list) {
+                    if (file != null && file.getPath() != null)
+                        result.put(file.getPath(), file);
+                }
+            }
+        } catch (IOException | JsonParseException e) {
+            LOG.log(Level.WARNING, "Unable to read installed modpack files " + installedFilesIndex, e);
+        }
+        return result;
+    }
+
+    private void writeInstalledFiles(Collection<ModpackExtractor.InstalledFile> installedFiles) throws IOException {
+        if (installedFilesIndex == null)
+            return;
+        FileUtils.writeText(installedFilesIndex, JsonUtils.UGLY_GSON.toJson(installedFiles));
     }
 }
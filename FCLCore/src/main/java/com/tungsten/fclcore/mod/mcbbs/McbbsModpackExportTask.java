@@ -35,7 +35,6 @@ import com.tungsten.fclcore.mod.curse.CurseManifest;
 import com.tungsten.fclcore.mod.curse.CurseManifestMinecraft;
 import com.tungsten.fclcore.mod.curse.CurseManifestModLoader;
 import com.tungsten.fclcore.task.Task;
-import com.tungsten.fclcore.util.DigestUtils;
 import com.tungsten.fclcore.util.Logging;
 import com.tungsten.fclcore.util.StringUtils;
 import com.tungsten.fclcore.util.gson.JsonUtils;
@@ -43,11 +42,11 @@ import com.tungsten.fclcore.util.io.Zipper;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public class McbbsModpackExportTask extends Task<Void> {
     private final DefaultGameRepository repository;
@@ -75,18 +74,10 @@ public class McbbsModpackExportTask extends Task<Void> {
         try (Zipper zip = new Zipper(modpackFile.toPath())) {
             Path runDirectory = repository.getRunDirectory(version).toPath();
             List<McbbsModpackManifest.File> files = new ArrayList<>();
-            zip.putDirectory(runDirectory, "overrides", path -> {
-                if (Modpack.acceptFile(path, blackList, info.getWhitelist())) {
-                    Path file = runDirectory.resolve(path);
-                    if (Files.isRegularFile(file)) {
-                        String relativePath = runDirectory.relativize(file).normalize().toString().replace(File.separatorChar, '/');
-                        files.add(new McbbsModpackManifest.AddonFile(true, relativePath, DigestUtils.digestToString("SHA-1", file)));
-                    }
-                    return true;
-                } else {
-                    return false;
-                }
-            });
+            Map<String, String> hashes = zip.putDirectory(runDirectory, "overrides",
+                    path -> Modpack.acceptFile(path, blackList, info.getWhitelist()), "SHA-1");
+            for (Map.Entry<String, String> hash : hashes.entrySet())
+                files.add(new McbbsModpackManifest.AddonFile(true, hash.getKey(), hash.getValue()));
 
             String gameVersion = repository.getGameVersion(version)
                     .orElseThrow(() -> new IOException("Cannot parse the version of " + version));
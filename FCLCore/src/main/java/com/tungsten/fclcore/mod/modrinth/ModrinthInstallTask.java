@@ -110,7 +110,7 @@ public class ModrinthInstallTask extends Task<Void> {
 
         this.config = config;
         List<String> subDirectories = Arrays.asList("/client-overrides", "/overrides");
-        dependents.add(new ModpackInstallTask<>(zipFile, run, modpack.getEncoding(), subDirectories, any -> true, config).withStage("fcl.modpack"));
+        dependents.add(new ModpackInstallTask<>(zipFile, run, modpack.getEncoding(), subDirectories, any -> true, config, repository.getModpackInstalledFiles(name)).withStage("fcl.modpack"));
         dependents.add(new MinecraftInstanceTask<>(zipFile, modpack.getEncoding(), subDirectories, manifest, ModrinthModpackProvider.INSTANCE, manifest.getName(), manifest.getVersionId(), repository.getModpackConfiguration(name)).withStage("fcl.modpack"));
 
         dependencies.add(new ModrinthCompletionTask(dependencyManager, name, manifest));
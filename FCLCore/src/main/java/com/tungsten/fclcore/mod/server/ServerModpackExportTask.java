@@ -32,7 +32,6 @@ import com.tungsten.fclcore.mod.Modpack;
 import com.tungsten.fclcore.mod.ModpackConfiguration;
 import com.tungsten.fclcore.mod.ModpackExportInfo;
 import com.tungsten.fclcore.task.Task;
-import com.tungsten.fclcore.util.DigestUtils;
 import com.tungsten.fclcore.util.Logging;
 import com.tungsten.fclcore.util.StringUtils;
 import com.tungsten.fclcore.util.gson.JsonUtils;
@@ -40,10 +39,10 @@ import com.tungsten.fclcore.util.io.Zipper;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 public class ServerModpackExportTask extends Task<Void> {
     private final DefaultGameRepository repository;
@@ -71,18 +70,10 @@ public class ServerModpackExportTask extends Task<Void> {
         try (Zipper zip = new Zipper(modpackFile.toPath())) {
             Path runDirectory = repository.getRunDirectory(versionId).toPath();
             List<ModpackConfiguration.FileInformation> files = new ArrayList<>();
-            zip.putDirectory(runDirectory, "overrides", path -> {
-                if (Modpack.acceptFile(path, blackList, exportInfo.getWhitelist())) {
-                    Path file = runDirectory.resolve(path);
-                    if (Files.isRegularFile(file)) {
-                        String relativePath = runDirectory.relativize(file).normalize().toString().replace(File.separatorChar, '/');
-                        files.add(new ModpackConfiguration.FileInformation(relativePath, DigestUtils.digestToString("SHA-1", file)));
-                    }
-                    return true;
-                } else {
-                    return false;
-                }
-            });
+            Map<String, String> hashes = zip.putDirectory(runDirectory, "overrides",
+                    path -> Modpack.acceptFile(path, blackList, exportInfo.getWhitelist()), "SHA-1");
+            for (Map.Entry<String, String> hash : hashes.entrySet())
+                files.add(new ModpackConfiguration.FileInformation(hash.getKey(), hash.getValue()));
 
             String gameVersion = repository.getGameVersion(versionId)
                     .orElseThrow(() -> new IOException("Cannot parse the version of " + versionId));
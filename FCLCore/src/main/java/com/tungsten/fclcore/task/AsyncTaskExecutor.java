@@ -24,6 +24,7 @@ import static com.tungsten.fclcore.util.Lang.wrap;
 import com.google.gson.JsonParseException;
 import com.tungsten.fclcore.util.Lang;
 import com.tungsten.fclcore.util.Logging;
+import com.tungsten.fclcore.util.function.ExceptionalRunnable;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -32,6 +33,14 @@ import java.util.logging.Level;
 
 public final class AsyncTaskExecutor extends TaskExecutor {
 
+    /**
+     * Steps of a task run directly on the thread completing the previous step, and a task whose executor
+     * is the fork-join pool of the current thread is executed without a thread switch. This bounds how many
+     * tasks may be started that way on top of each other before switching threads to unwind the stack.
+     */
+    private static final int MAX_INLINE_DEPTH = 16;
+    private static final ThreadLocal<int[]> INLINE_DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+
     private CompletableFuture<Boolean> future;
 
     public AsyncTaskExecutor(Task<?> task) {
@@ -41,8 +50,9 @@ public final class AsyncTaskExecutor extends TaskExecutor {
     @Override
     public TaskExecutor start() {
         taskListeners.forEach(TaskListener::onStart);
-        future = executeTasks(null, Collections.singleton(firstTask))
-                .thenApplyAsync(exception -> {
+        future = CompletableFuture.completedFuture(null)
+                .thenComposeAsync(unused -> executeTasks(null, Collections.singleton(firstTask)), Schedulers.defaultScheduler())
+                .thenApply(exception -> {
                     boolean success = exception == null;
 
                     if (!success) {
@@ -98,25 +108,26 @@ public final class AsyncTaskExecutor extends TaskExecutor {
         if (tasks == null || tasks.isEmpty())
             return CompletableFuture.completedFuture(null);
 
-        return CompletableFuture.completedFuture(null)
-                .thenComposeAsync(unused -> {
-                    totTask.addAndGet(tasks.size());
+        totTask.addAndGet(tasks.size());
 
-                    if (isCancelled()) {
-                        for (Task<?> task : tasks) task.setException(new CancellationException());
-                        return CompletableFuture.runAsync(this::checkCancellation);
-                    }
+        if (isCancelled()) {
+            for (Task<?> task : tasks) task.setException(new CancellationException());
+            return failedFuture(new CancellationException("Cancelled by user"));
+        }
 
-                    return CompletableFuture.allOf(tasks.stream()
-                            .map(task -> CompletableFuture.completedFuture(null)
-                                    .thenComposeAsync(unused2 -> executeTask(parentTask, task))
-                            ).toArray(CompletableFuture<?>[]::new));
-                });
+        if (tasks.size() == 1)
+            return executeTask(parentTask, tasks.iterator().next());
+
+        // Start siblings on separate threads so that they can run concurrently
+        return CompletableFuture.allOf(tasks.stream()
+                .map(task -> CompletableFuture.completedFuture(null)
+                        .thenComposeAsync(unused -> executeTask(parentTask, task), Schedulers.defaultScheduler())
+                ).toArray(CompletableFuture<?>[]::new));
     }
 
     private CompletableFuture<Exception> executeTasks(Task<?> parentTask, Collection<? extends Task<?>> tasks) {
         return executeTasksExceptionally(parentTask, tasks)
-                .thenApplyAsync(unused -> (Exception) null)
+                .thenApply(unused -> (Exception) null)
                 .exceptionally(throwable -> {
                     Throwable resolved = resolveException(throwable);
                     if (resolved instanceof Exception) {
@@ -128,9 +139,36 @@ public final class AsyncTaskExecutor extends TaskExecutor {
                 });
     }
 
+    private static <T> CompletableFuture<T> failedFuture(Throwable throwable) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(throwable instanceof CompletionException ? throwable : new CompletionException(throwable));
+        return future;
+    }
+
+    /**
+     * Run the action in the executor, directly if the current thread belongs to it.
+     * After running in an executor other than the default scheduler, such as the UI thread or the I/O pool,
+     * the returned future completes on the default scheduler, so the steps following the action do not occupy it.
+     */
+    private static CompletableFuture<Void> runOn(ExceptionalRunnable<?> action, Executor executor) {
+        if (executor instanceof ForkJoinPool && ForkJoinTask.getPool() == executor && INLINE_DEPTH.get()[0] < MAX_INLINE_DEPTH) {
+            try {
+                action.run();
+                return CompletableFuture.completedFuture(null);
+            } catch (Throwable e) {
+                return failedFuture(e);
+            }
+        }
+        CompletableFuture<Void> future = CompletableFuture.runAsync(wrap(action), executor);
+        if (executor != Schedulers.defaultScheduler())
+            return future.whenCompleteAsync((unused, throwable) -> {
+            }, Schedulers.defaultScheduler());
+        return future;
+    }
+
     private <T> CompletableFuture<T> executeCompletableFutureTask(Task<?> parentTask, CompletableFutureTask<T> task) {
         return CompletableFuture.completedFuture(null)
-                .thenComposeAsync(unused -> {
+                .thenCompose(unused -> {
                     checkCancellation();
 
                     task.setCancelled(this::isCancelled);
@@ -155,7 +193,7 @@ public final class AsyncTaskExecutor extends TaskExecutor {
                         }
                     });
                 })
-                .thenApplyAsync(result -> {
+                .thenApply(result -> {
                     checkCancellation();
 
                     if (task.getSignificance().shouldLog()) {
@@ -200,7 +238,7 @@ public final class AsyncTaskExecutor extends TaskExecutor {
 
     private <T> CompletableFuture<T> executeNormalTask(Task<?> parentTask, Task<T> task) {
         return CompletableFuture.completedFuture(null)
-                .thenComposeAsync(unused -> {
+                .thenCompose(unused -> {
                     checkCancellation();
 
                     task.setCancelled(this::isCancelled);
@@ -218,13 +256,13 @@ public final class AsyncTaskExecutor extends TaskExecutor {
                     taskListeners.forEach(it -> it.onReady(task));
 
                     if (task.doPreExecute()) {
-                        return CompletableFuture.runAsync(wrap(task::preExecute), task.getExecutor());
+                        return runOn(task::preExecute, task.getExecutor());
                     } else {
                         return CompletableFuture.completedFuture(null);
                     }
                 })
-                .thenComposeAsync(unused -> executeTasks(task, task.getDependents()))
-                .thenComposeAsync(dependentsException -> {
+                .thenCompose(unused -> executeTasks(task, task.getDependents()))
+                .thenCompose(dependentsException -> {
                     boolean isDependentsSucceeded = dependentsException == null;
 
                     if (isDependentsSucceeded) {
@@ -237,30 +275,30 @@ public final class AsyncTaskExecutor extends TaskExecutor {
                         }
                     }
 
-                    return CompletableFuture.runAsync(wrap(() -> {
+                    return runOn(() -> {
                         task.setState(Task.TaskState.RUNNING);
                         taskListeners.forEach(it -> it.onRunning(task));
                         task.execute();
-                    }), task.getExecutor()).whenComplete((unused, throwable) -> {
+                    }, task.getExecutor()).whenComplete((unused, throwable) -> {
                         task.setState(Task.TaskState.EXECUTED);
                         rethrow(throwable);
                     });
                 })
-                .thenComposeAsync(unused -> executeTasks(task, task.getDependencies()))
-                .thenComposeAsync(dependenciesException -> {
+                .thenCompose(unused -> executeTasks(task, task.getDependencies()))
+                .thenCompose(dependenciesException -> {
                     boolean isDependenciesSucceeded = dependenciesException == null;
 
                     if (isDependenciesSucceeded)
                         task.setDependenciesSucceeded();
 
                     if (task.doPostExecute()) {
-                        return CompletableFuture.runAsync(wrap(task::postExecute), task.getExecutor())
+                        return runOn(task::postExecute, task.getExecutor())
                                 .thenApply(unused -> dependenciesException);
                     } else {
                         return CompletableFuture.completedFuture(dependenciesException);
                     }
                 })
-                .thenApplyAsync(dependenciesException -> {
+                .thenApply(dependenciesException -> {
                     boolean isDependenciesSucceeded = dependenciesException == null;
 
                     if (!isDependenciesSucceeded) {
@@ -310,10 +348,21 @@ public final class AsyncTaskExecutor extends TaskExecutor {
     }
 
     private <T> CompletableFuture<T> executeTask(Task<?> parentTask, Task<T> task) {
-        if (task instanceof CompletableFutureTask<?>) {
-            return executeCompletableFutureTask(parentTask, (CompletableFutureTask<T>) task);
-        } else {
-            return executeNormalTask(parentTask, task);
+        int[] depth = INLINE_DEPTH.get();
+        if (depth[0] >= MAX_INLINE_DEPTH) {
+            return CompletableFuture.completedFuture(null)
+                    .thenComposeAsync(unused -> executeTask(parentTask, task), Schedulers.defaultScheduler());
+        }
+
+        depth[0]++;
+        try {
+            if (task instanceof CompletableFutureTask<?>) {
+                return executeCompletableFutureTask(parentTask, (CompletableFutureTask<T>) task);
+            } else {
+                return executeNormalTask(parentTask, task);
+            }
+        } finally {
+            depth[0]--;
         }
     }
 
@@ -18,13 +18,16 @@
 package com.tungsten.fclcore.task;
 
 import static com.tungsten.fclcore.util.Lang.threadPool;
+import static com.tungsten.fclcore.util.Lang.wrap;
 
 import com.tungsten.fclcore.event.Event;
 import com.tungsten.fclcore.event.EventBus;
 import com.tungsten.fclcore.util.CacheRepository;
 import com.tungsten.fclcore.util.Logging;
 import com.tungsten.fclcore.util.ToStringBuilder;
-import com.tungsten.fclcore.util.io.IOUtils;
+import com.tungsten.fclcore.util.io.ByteArrayPool;
+import com.tungsten.fclcore.util.io.HostConnectionLimiter;
+import com.tungsten.fclcore.util.io.MirrorHealth;
 import com.tungsten.fclcore.util.io.NetworkUtils;
 import com.tungsten.fclcore.util.io.ResponseCodeException;
 
@@ -32,6 +35,7 @@ import java.io.Closeable;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
@@ -39,6 +43,7 @@ import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
@@ -46,6 +51,8 @@ public abstract class FetchTask<T> extends Task<T> {
     protected final List<URL> urls;
     protected final int retry;
     protected boolean caching;
+    protected boolean racing = true;
+    protected long expectedSize = -1;
     protected CacheRepository repository = CacheRepository.getInstance();
 
     public FetchTask(List<URL> urls, int retry) {
@@ -68,6 +75,21 @@ public abstract class FetchTask<T> extends Task<T> {
         this.repository = repository;
     }
 
+    /**
+     * Whether to try another mirror at the same time when the preferred one is slow to respond.
+     * Enabled by default, but only files known to be large are raced, see {@link #setExpectedSize(long)}.
+     */
+    public void setRacing(boolean racing) {
+        this.racing = racing;
+    }
+
+    /**
+     * @param expectedSize size of the file in bytes, or a non-positive value if unknown
+     */
+    public void setExpectedSize(long expectedSize) {
+        this.expectedSize = expectedSize;
+    }
+
     protected void beforeDownload(URL url) throws IOException {}
 
     protected abstract void useCachedResult(Path cachedFile) throws IOException;
@@ -87,36 +109,48 @@ public abstract class FetchTask<T> extends Task<T> {
             default: return;
         }
 
+        List<URL> candidates = MirrorHealth.sort(urls);
         int repeat = 0;
-        download: for (URL url : urls) {
+        download: for (int urlIndex = 0; urlIndex < candidates.size(); urlIndex++) {
+            URL url = candidates.get(urlIndex);
             for (int retryTime = 0; retryTime < retry; retryTime++) {
                 if (isCancelled()) {
                     break download;
                 }
 
-                List<String> redirects = null;
+                List<String> redirects = new ArrayList<>();
+                Connection connection = null;
                 try {
                     beforeDownload(url);
 
                     updateProgress(0);
 
-                    URLConnection conn = NetworkUtils.createConnection(url);
-                    if (checkETag) repository.injectConnection(conn);
+                    URL alternative = racing && expectedSize >= MIN_RACE_SIZE && retryTime == 0 ? findAlternative(candidates, urlIndex) : null;
+                    if (alternative == null) {
+                        connection = connect(url, checkETag, redirects);
+                    } else {
+                        connection = race(url, alternative, checkETag);
+                        redirects = connection.redirects;
+                    }
+                    URLConnection conn = connection.connection;
 
                     if (conn instanceof HttpURLConnection) {
-                        redirects = new ArrayList<>();
-
-                        conn = NetworkUtils.resolveConnection((HttpURLConnection) conn, redirects);
                         int responseCode = ((HttpURLConnection) conn).getResponseCode();
 
+                        if (responseCode / 100 != 2) {
+                            // Consume the body so that the connection is kept alive for the next download
+                            NetworkUtils.discard((HttpURLConnection) conn);
+                        }
+
                         if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                            MirrorHealth.recordSuccess(connection.url);
                             // Handle cache
                             try {
                                 Path cache = repository.getCachedRemoteFile(conn);
                                 useCachedResult(cache);
                                 return;
                             } catch (IOException e) {
-                                Logging.LOG.log(Level.WARNING, "Unable to use cached file, redownload " + url, e);
+                                Logging.LOG.log(Level.WARNING, "Unable to use cached file, redownload " + connection.url, e);
                                 repository.removeRemoteEntry(conn);
                                 // Now we must reconnect the server since 304 may result in empty content,
                                 // if we want to redownload the file, we must reconnect the server without etag settings.
@@ -124,16 +158,17 @@ public abstract class FetchTask<T> extends Task<T> {
                                 continue;
                             }
                         } else if (responseCode / 100 == 4) {
-                            throw new FileNotFoundException(url.toString());
+                            throw new FileNotFoundException(connection.url.toString());
                         } else if (responseCode / 100 != 2) {
-                            throw new ResponseCodeException(url, responseCode);
+                            throw new ResponseCodeException(connection.url, responseCode);
                         }
                     }
 
                     long contentLength = conn.getContentLength();
+                    long startTime = System.nanoTime();
+                    byte[] buffer = ByteArrayPool.DOWNLOAD.acquire();
                     try (Context context = getContext(conn, checkETag); InputStream stream = conn.getInputStream()) {
                         int lastDownloaded = 0, downloaded = 0;
-                        byte[] buffer = new byte[IOUtils.DEFAULT_BUFFER_SIZE];
                         while (true) {
                             if (isCancelled()) break;
 
@@ -161,19 +196,28 @@ public abstract class FetchTask<T> extends Task<T> {
                             throw new IOException("Unexpected file size: " + downloaded + ", expected: " + contentLength);
 
                         context.withResult(true);
+                        MirrorHealth.recordTransfer(connection.url, downloaded, System.nanoTime() - startTime);
+                    } finally {
+                        ByteArrayPool.DOWNLOAD.release(buffer);
                     }
 
                     return;
                 } catch (FileNotFoundException ex) {
-                    failedURL = url;
+                    failedURL = connection == null ? url : connection.url;
                     exception = ex;
-                    Logging.LOG.log(Level.WARNING, "Failed to download " + url + ", not found" + ((redirects == null || redirects.isEmpty()) ? "" : ", redirects: " + redirects), ex);
+                    Logging.LOG.log(Level.WARNING, "Failed to download " + failedURL + ", not found" + ((redirects == null || redirects.isEmpty()) ? "" : ", redirects: " + redirects), ex);
 
                     break; // we will not try this URL again
                 } catch (IOException ex) {
-                    failedURL = url;
+                    failedURL = connection == null ? url : connection.url;
                     exception = ex;
-                    Logging.LOG.log(Level.WARNING, "Failed to download " + url + ", repeat times: " + (++repeat) + ((redirects == null || redirects.isEmpty()) ? "" : ", redirects: " + redirects), ex);
+                    // Failures to connect have been recorded by connect()
+                    if (connection != null)
+                        MirrorHealth.recordFailure(connection.url);
+                    Logging.LOG.log(Level.WARNING, "Failed to download " + failedURL + ", repeat times: " + (++repeat) + ((redirects == null || redirects.isEmpty()) ? "" : ", redirects: " + redirects), ex);
+                } finally {
+                    if (connection != null)
+                        connection.close();
                 }
             }
         }
@@ -182,6 +226,201 @@ public abstract class FetchTask<T> extends Task<T> {
             throw new DownloadException(failedURL, exception);
     }
 
+    /**
+     * Open a connection to the given URL, following redirects, and wait for the response.
+     * A connection slot of the host is held until the returned connection is closed.
+     */
+    private Connection connect(URL url, boolean checkETag, List<String> redirects) throws IOException {
+        HostConnectionLimiter.Permit permit = HostConnectionLimiter.acquire(url);
+        try {
+            long startTime = System.nanoTime();
+            URLConnection conn = NetworkUtils.createConnection(url);
+            if (checkETag) repository.injectConnection(conn);
+
+            if (conn instanceof HttpURLConnection) {
+                conn = NetworkUtils.resolveConnection((HttpURLConnection) conn, redirects);
+                // Error responses say nothing about how fast the host serves files
+                if (isUsable(conn))
+                    MirrorHealth.recordResponse(url, System.nanoTime() - startTime);
+            }
+            return new Connection(url, conn, redirects, permit);
+        } catch (IOException | RuntimeException e) {
+            if (e instanceof IOException)
+                MirrorHealth.recordFailure(url);
+            permit.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the next candidate after the given one which is on another host, or null if there is none
+     */
+    private static URL findAlternative(List<URL> candidates, int index) {
+        URL url = candidates.get(index);
+        for (int i = index + 1; i < candidates.size(); i++) {
+            if (!MirrorHealth.isSameHost(url, candidates.get(i)))
+                return candidates.get(i);
+        }
+        return null;
+    }
+
+    /**
+     * @return whether the response of the connection can be used, that is, it is not an error response
+     */
+    private static boolean isUsable(URLConnection conn) throws IOException {
+        if (!(conn instanceof HttpURLConnection))
+            return true;
+        int responseCode = ((HttpURLConnection) conn).getResponseCode();
+        return responseCode / 100 == 2 || responseCode == HttpURLConnection.HTTP_NOT_MODIFIED;
+    }
+
+    /**
+     * Connect to {@code primary}, and if it does not respond within a few times its usual latency,
+     * connect to {@code alternative} as well. The first of the two to respond successfully is used and the other one is closed.
+     * If neither does, the error response of the primary is returned if there is one, so that it is handled as without racing.
+     */
+    private Connection race(URL primary, URL alternative, boolean checkETag) throws IOException {
+        CompletableFuture<Connection> first = CompletableFuture.supplyAsync(
+                wrap(() -> connect(primary, checkETag, new ArrayList<>())), RaceExecutorHolder.EXECUTOR);
+
+        long delay = Math.max(MIN_RACE_DELAY, Math.min(MAX_RACE_DELAY, MirrorHealth.getExpectedLatency(primary) * 4));
+        try {
+            return first.get(delay, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException ignored) {
+            // Primary is slow, start the race
+        } catch (ExecutionException e) {
+            throw unwrapConnectException(e.getCause());
+        } catch (InterruptedException e) {
+            first.thenAccept(Connection::abort);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+
+        Logging.LOG.log(Level.FINE, primary + " is slow to respond, trying " + alternative + " as well");
+
+        CompletableFuture<Connection> second = CompletableFuture.supplyAsync(
+                wrap(() -> connect(alternative, checkETag, new ArrayList<>())), RaceExecutorHolder.EXECUTOR);
+        Race race = new Race(primary);
+        first.whenComplete(race::accept);
+        second.whenComplete(race::accept);
+
+        try {
+            return race.winner.get();
+        } catch (ExecutionException e) {
+            throw unwrapConnectException(e.getCause());
+        } catch (InterruptedException e) {
+            // Connections completing from now on are closed by the race
+            race.winner.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    private static final class Race {
+        final CompletableFuture<Connection> winner = new CompletableFuture<>();
+        private final URL primary;
+        private int pending = 2;
+        private Connection rejected;
+        private Throwable failure;
+
+        Race(URL primary) {
+            this.primary = primary;
+        }
+
+        void accept(Connection connection, Throwable e) {
+            List<Connection> losers = new ArrayList<>(2);
+            synchronized (this) {
+                pending--;
+                if (e != null) {
+                    if (failure == null)
+                        failure = e;
+                } else if (usable(connection)) {
+                    if (winner.complete(connection)) {
+                        if (rejected != null)
+                            losers.add(rejected);
+                        rejected = null;
+                    } else {
+                        losers.add(connection);
+                    }
+                } else {
+                    // An error response, only used if neither mirror responds successfully
+                    if (winner.isDone()) {
+                        losers.add(connection);
+                    } else if (rejected == null || connection.url == primary) {
+                        if (rejected != null)
+                            losers.add(rejected);
+                        rejected = connection;
+                    } else {
+                        losers.add(connection);
+                    }
+                }
+
+                if (pending == 0 && !winner.isDone()) {
+                    if (rejected != null) {
+                        winner.complete(rejected);
+                        rejected = null;
+                    } else {
+                        winner.completeExceptionally(failure);
+                    }
+                } else if (winner.isCancelled() && rejected != null) {
+                    losers.add(rejected);
+                    rejected = null;
+                }
+            }
+            for (Connection loser : losers) {
+                // Unlike the returned connection, which execute() handles as without racing
+                if (!usable(loser))
+                    MirrorHealth.recordFailure(loser.url);
+                loser.abort();
+            }
+        }
+
+        private static boolean usable(Connection connection) {
+            try {
+                return isUsable(connection.connection);
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+
+    private static IOException unwrapConnectException(Throwable e) {
+        if (e instanceof CompletionException && e.getCause() != null)
+            e = e.getCause();
+        if (e instanceof IOException)
+            return (IOException) e;
+        if (e instanceof RuntimeException)
+            throw (RuntimeException) e;
+        return new IOException(e);
+    }
+
+    private static final class Connection {
+        final URL url;
+        final URLConnection connection;
+        final List<String> redirects;
+        private final HostConnectionLimiter.Permit permit;
+
+        Connection(URL url, URLConnection connection, List<String> redirects, HostConnectionLimiter.Permit permit) {
+            this.url = url;
+            this.connection = connection;
+            this.redirects = redirects;
+            this.permit = permit;
+        }
+
+        /**
+         * Drop a connection whose response will not be read.
+         */
+        void abort() {
+            if (connection instanceof HttpURLConnection)
+                ((HttpURLConnection) connection).disconnect();
+            close();
+        }
+
+        void close() {
+            permit.close();
+        }
+    }
+
     private static final Timer timer = new Timer("DownloadSpeedRecorder", true);
     private static final AtomicInteger downloadSpeed = new AtomicInteger(0);
     public static final EventBus speedEvent = new EventBus();
@@ -279,6 +518,18 @@ public abstract class FetchTask<T> extends Task<T> {
 
     }
 
+    private static final long MIN_RACE_DELAY = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_RACE_DELAY = TimeUnit.SECONDS.toNanos(4);
+    // Files smaller than this download quickly anyway, so they are not worth a second connection
+    private static final long MIN_RACE_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Connections being raced are opened in their own threads, since the download threads wait for them.
+     */
+    private static final class RaceExecutorHolder {
+        static final ThreadPoolExecutor EXECUTOR = threadPool("DownloadRace", true, 8, 10, TimeUnit.SECONDS);
+    }
+
     public static int DEFAULT_CONCURRENCY = Math.min(Runtime.getRuntime().availableProcessors() * 4, 64);
     private static int downloadExecutorConcurrency = DEFAULT_CONCURRENCY;
     private static volatile ThreadPoolExecutor DOWNLOAD_EXECUTOR;
@@ -315,6 +566,7 @@ public abstract class FetchTask<T> extends Task<T> {
                 }
             }
         }
+        HostConnectionLimiter.setMaxConnectionsPerHost(concurrency);
     }
 
     public static int getDownloadExecutorConcurrency() {
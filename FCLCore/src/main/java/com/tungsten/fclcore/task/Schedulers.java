@@ -25,6 +25,7 @@ import android.os.Looper;
 import com.tungsten.fclcore.util.Logging;
 
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class Schedulers {
 
@@ -32,13 +33,15 @@ public final class Schedulers {
     }
 
     private static volatile ExecutorService IO_EXECUTOR;
+    private static volatile ForkJoinPool DEFAULT_EXECUTOR;
+    private static volatile ForkJoinPool COMPUTATION_EXECUTOR;
 
     /**
      * Get singleton instance of the thread pool for I/O operations,
      * usually for reading files from disk, or Internet connections.
      *
-     * This thread pool has no more than 4 threads, and number of threads will get
-     * reduced if concurrency is less than thread number.
+     * Threads of this pool spend most of their time blocked, so it has twice as many threads
+     * as processors, between 4 and 16. Idle threads are released after 10 seconds.
      *
      * @return Thread pool for I/O operations.
      */
@@ -46,7 +49,8 @@ public final class Schedulers {
         if (IO_EXECUTOR == null) {
             synchronized (Schedulers.class) {
                 if (IO_EXECUTOR == null) {
-                    IO_EXECUTOR = threadPool("IO", true, 4, 10, TimeUnit.SECONDS);
+                    int threads = Math.max(4, Math.min(Runtime.getRuntime().availableProcessors() * 2, 16));
+                    IO_EXECUTOR = threadPool("IO", true, threads, 10, TimeUnit.SECONDS);
                 }
             }
         }
@@ -54,13 +58,74 @@ public final class Schedulers {
         return IO_EXECUTOR;
     }
 
+    /**
+     * Get the thread pool for CPU bound work, like hashing and parsing.
+     *
+     * Parallel streams started from a task running in this pool also run in this pool,
+     * so they do not compete with tasks in {@link #defaultScheduler()} or the common pool.
+     *
+     * @return Thread pool with one thread per processor.
+     */
+    public static ForkJoinPool computation() {
+        if (COMPUTATION_EXECUTOR == null) {
+            synchronized (Schedulers.class) {
+                if (COMPUTATION_EXECUTOR == null) {
+                    COMPUTATION_EXECUTOR = forkJoinPool("Computation", Runtime.getRuntime().availableProcessors(), false);
+                }
+            }
+        }
+
+        return COMPUTATION_EXECUTOR;
+    }
+
+    private static ForkJoinPool forkJoinPool(String name, int parallelism, boolean asyncMode) {
+        AtomicInteger counter = new AtomicInteger(1);
+        return new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(name + "-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }, null, asyncMode);
+    }
+
+    private static final class MainThreadExecutor implements Executor {
+        private static final MainThreadExecutor INSTANCE = new MainThreadExecutor();
+
+        private final Looper looper = Looper.getMainLooper();
+        private final Handler handler = new Handler(looper);
+
+        @Override
+        public void execute(Runnable command) {
+            if (Looper.myLooper() == looper)
+                command.run();
+            else
+                handler.post(command);
+        }
+    }
+
+    /**
+     * Runs commands on the main thread, directly if the caller is already on it.
+     */
     public static Executor androidUIThread() {
-        Handler handler = new Handler(Looper.getMainLooper());
-        return handler::post;
+        return MainThreadExecutor.INSTANCE;
     }
 
+    /**
+     * Get the executor tasks run in by default.
+     *
+     * It is a pool dedicated to the task engine, so parallel streams and other users
+     * of the common pool cannot starve it.
+     */
     public static Executor defaultScheduler() {
-        return ForkJoinPool.commonPool();
+        if (DEFAULT_EXECUTOR == null) {
+            synchronized (Schedulers.class) {
+                if (DEFAULT_EXECUTOR == null) {
+                    DEFAULT_EXECUTOR = forkJoinPool("Task", Math.max(2, Runtime.getRuntime().availableProcessors()), true);
+                }
+            }
+        }
+
+        return DEFAULT_EXECUTOR;
     }
 
     public static synchronized void shutdown() {
@@ -72,6 +137,10 @@ public final class Schedulers {
 
         if (IO_EXECUTOR != null)
             IO_EXECUTOR.shutdownNow();
+        if (DEFAULT_EXECUTOR != null)
+            DEFAULT_EXECUTOR.shutdownNow();
+        if (COMPUTATION_EXECUTOR != null)
+            COMPUTATION_EXECUTOR.shutdownNow();
     }
 
 }
@@ -22,7 +22,6 @@ import com.tungsten.fclcore.fakefx.beans.property.ReadOnlyDoubleProperty;
 import com.tungsten.fclcore.fakefx.beans.property.ReadOnlyDoubleWrapper;
 import com.tungsten.fclcore.fakefx.beans.property.ReadOnlyStringProperty;
 import com.tungsten.fclcore.fakefx.beans.property.ReadOnlyStringWrapper;
-import com.tungsten.fclcore.util.InvocationDispatcher;
 import com.tungsten.fclcore.util.Logging;
 import com.tungsten.fclcore.util.ReflectionHelper;
 import com.tungsten.fclcore.util.function.ExceptionalConsumer;
@@ -318,10 +317,25 @@ public abstract class Task<T> {
     }
 
     private long lastTime = Long.MIN_VALUE;
-    private final ReadOnlyDoubleWrapper progress = new ReadOnlyDoubleWrapper(this, "progress", -1);
-    private final InvocationDispatcher<Double> progressUpdate = InvocationDispatcher.runOn(Schedulers.androidUIThread(), progress::set);
 
+    // Latest values reported by the task, applied to the properties by TaskProgressAggregator
+    private volatile double pendingProgress = -1;
+    private volatile String pendingMessage = null;
+    private volatile boolean observed = false;
+
+    // Created on the UI thread when first observed
+    private ReadOnlyDoubleWrapper progress;
+    private ReadOnlyStringWrapper message;
+
+    /**
+     * Must be called on the UI thread. The property is updated at most once per frame.
+     */
     public ReadOnlyDoubleProperty progressProperty() {
+        if (progress == null) {
+            // Set before reading the pending value, so that no update in between gets lost
+            observed = true;
+            progress = new ReadOnlyDoubleWrapper(this, "progress", pendingProgress);
+        }
         return progress.getReadOnlyProperty();
     }
 
@@ -340,18 +354,36 @@ public abstract class Task<T> {
     }
 
     protected void updateProgressImmediately(double progress) {
-        progressUpdate.accept(progress);
+        pendingProgress = progress;
+        if (observed)
+            TaskProgressAggregator.getInstance().markDirty(this);
     }
 
-    private final ReadOnlyStringWrapper message = new ReadOnlyStringWrapper(this, "message", null);
-    private final InvocationDispatcher<String> messageUpdate = InvocationDispatcher.runOn(Schedulers.androidUIThread(), message::set);
-
+    /**
+     * Must be called on the UI thread. The property is updated at most once per frame.
+     */
     public final ReadOnlyStringProperty messageProperty() {
+        if (message == null) {
+            observed = true;
+            message = new ReadOnlyStringWrapper(this, "message", pendingMessage);
+        }
         return message.getReadOnlyProperty();
     }
 
     protected final void updateMessage(String newMessage) {
-        messageUpdate.accept(newMessage);
+        pendingMessage = newMessage;
+        if (observed)
+            TaskProgressAggregator.getInstance().markDirty(this);
+    }
+
+    /**
+     * Called by {@link TaskProgressAggregator} on the UI thread.
+     */
+    void applyProgress() {
+        if (progress != null)
+            progress.set(pendingProgress);
+        if (message != null)
+            message.set(pendingMessage);
     }
 
     public final T run() throws Exception {
@@ -0,0 +1,84 @@
+package com.tungsten.fclcore.task;
+
+import android.view.Choreographer;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Collects progress and message changes of running tasks, and UI actions caused by task events,
+ * and delivers all of them together once per frame.
+ *
+ * However many tasks are running, the UI thread receives at most one update per frame. Tasks only
+ * report changes here while their progress or message property is observed.
+ */
+public final class TaskProgressAggregator {
+
+    private static volatile TaskProgressAggregator instance;
+
+    public static TaskProgressAggregator getInstance() {
+        if (instance == null) {
+            synchronized (TaskProgressAggregator.class) {
+                if (instance == null) {
+                    instance = new TaskProgressAggregator(androidFrameScheduler());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private static Executor androidFrameScheduler() {
+        Executor mainThread = Schedulers.androidUIThread();
+        return runnable -> mainThread.execute(() -> Choreographer.getInstance().postFrameCallback(frameTimeNanos -> runnable.run()));
+    }
+
+    private final Executor frameScheduler;
+    private final Set<Task<?>> dirtyTasks = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<Runnable> actions = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    /**
+     * @param frameScheduler runs the given update on the UI thread at the next frame
+     */
+    public TaskProgressAggregator(Executor frameScheduler) {
+        this.frameScheduler = frameScheduler;
+    }
+
+    void markDirty(Task<?> task) {
+        dirtyTasks.add(task);
+        schedule();
+    }
+
+    /**
+     * Run an action on the UI thread with the next update.
+     * Actions run in the order they are posted, before progress is applied.
+     */
+    public void post(Runnable action) {
+        actions.add(action);
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true))
+            frameScheduler.execute(this::update);
+    }
+
+    private void update() {
+        // Changes from now on need another frame
+        scheduled.set(false);
+
+        Runnable action;
+        while ((action = actions.poll()) != null)
+            action.run();
+
+        for (Iterator<Task<?>> iterator = dirtyTasks.iterator(); iterator.hasNext(); ) {
+            Task<?> task = iterator.next();
+            iterator.remove();
+            task.applyProgress();
+        }
+    }
+}
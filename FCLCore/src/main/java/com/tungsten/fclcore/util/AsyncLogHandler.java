@@ -0,0 +1,237 @@
+package com.tungsten.fclcore.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Handler that hands log records over to a background thread.
+ *
+ * Callers only resolve the source of the record and put it into a bounded ring.
+ * The background thread takes records out in batches, filters access tokens, formats them
+ * and writes them to the log file, the console and the in-memory log, flushing once per batch.
+ * When the ring is full, callers wait for free space instead of dropping records.
+ *
+ * Records of level {@link Level#WARNING} and above are written before {@link #publish(LogRecord)} returns,
+ * since they are the ones that matter if the process is killed right after, for example by a crash.
+ */
+final class AsyncLogHandler extends Handler {
+
+    private static final int CAPACITY = 8192; // must be a power of 2
+    private static final int MASK = CAPACITY - 1;
+    private static final int BATCH_SIZE = 256;
+
+    private final AtomicReferenceArray<LogRecord> slots = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head = 0;
+
+    private final Object flushLock = new Object();
+    private volatile long flushed = 0;
+
+    private volatile boolean waiting = false;
+    private volatile boolean closed = false;
+
+    private OutputStream file;
+    private final LogRingBuffer memory;
+    private final PrintStream console = System.err;
+    private final Thread thread;
+
+    AsyncLogHandler(OutputStream file, LogRingBuffer memory) {
+        this.file = file;
+        this.memory = memory;
+
+        thread = new Thread(this::run, "Logging");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record))
+            return;
+
+        // The caller can only be inferred on the thread that logged the record
+        record.getSourceClassName();
+
+        while (!offer(record)) {
+            if (closed)
+                return;
+            if (Thread.currentThread() == thread) {
+                // Never wait for ourselves
+                handle(record);
+                return;
+            }
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(this, TimeUnit.MICROSECONDS.toNanos(100));
+        }
+
+        if (record.getLevel().intValue() >= Level.WARNING.intValue())
+            flush();
+        else if (waiting)
+            LockSupport.unpark(thread);
+    }
+
+    private boolean offer(LogRecord record) {
+        long t;
+        do {
+            t = tail.get();
+            if (t - head >= CAPACITY)
+                return false;
+        } while (!tail.compareAndSet(t, t + 1));
+
+        slots.set((int) (t & MASK), record);
+        return true;
+    }
+
+    private void run() {
+        while (true) {
+            if (drain() > 0)
+                continue;
+
+            if (closed && head == tail.get())
+                break;
+
+            waiting = true;
+            if (!closed && head == tail.get())
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(500));
+            waiting = false;
+        }
+
+        synchronized (flushLock) {
+            flushed = head;
+            flushLock.notifyAll();
+        }
+
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                reportError("Unable to close log file", e, ErrorManager.CLOSE_FAILURE);
+            }
+            file = null;
+        }
+    }
+
+    private int drain() {
+        long h = head;
+        int count = 0;
+        while (count < BATCH_SIZE && h < tail.get()) {
+            int index = (int) (h & MASK);
+            LogRecord record;
+            // The slot has been claimed but the record may not be visible yet
+            while ((record = slots.get(index)) == null)
+                Thread.yield();
+            slots.lazySet(index, null);
+            head = ++h;
+
+            handle(record);
+            count++;
+        }
+
+        if (count > 0) {
+            flushSinks();
+            synchronized (flushLock) {
+                flushed = h;
+                flushLock.notifyAll();
+            }
+        }
+        return count;
+    }
+
+    private void handle(LogRecord record) {
+        byte[] bytes;
+        try {
+            bytes = Logging.format(record).getBytes(StandardCharsets.UTF_8);
+        } catch (RuntimeException e) {
+            reportError("Unable to format log record", e, ErrorManager.FORMAT_FAILURE);
+            return;
+        }
+
+        int level = record.getLevel().intValue();
+
+        if (file != null && level >= Level.FINEST.intValue()) {
+            try {
+                file.write(bytes);
+            } catch (IOException e) {
+                reportError("Unable to write log file", e, ErrorManager.WRITE_FAILURE);
+                closeFileQuietly();
+            }
+        }
+
+        if (level >= Level.FINER.intValue())
+            console.write(bytes, 0, bytes.length);
+
+        memory.write(bytes, 0, bytes.length);
+    }
+
+    private void flushSinks() {
+        if (file != null) {
+            try {
+                file.flush();
+            } catch (IOException e) {
+                reportError("Unable to flush log file", e, ErrorManager.FLUSH_FAILURE);
+                closeFileQuietly();
+            }
+        }
+        console.flush();
+    }
+
+    private void closeFileQuietly() {
+        try {
+            file.close();
+        } catch (IOException ignored) {
+        }
+        file = null;
+    }
+
+    /**
+     * Wait until all records published before this call are written.
+     */
+    @Override
+    public void flush() {
+        if (Thread.currentThread() == thread)
+            return;
+
+        long target = tail.get();
+        LockSupport.unpark(thread);
+        boolean interrupted = false;
+        synchronized (flushLock) {
+            while (flushed < target && thread.isAlive()) {
+                try {
+                    flushLock.wait(100);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Write out pending records and stop the background thread.
+     */
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        LockSupport.unpark(thread);
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
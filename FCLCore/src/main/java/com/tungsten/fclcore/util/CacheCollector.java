@@ -0,0 +1,160 @@
+package com.tungsten.fclcore.util;
+
+import com.tungsten.fclcore.util.function.ExceptionalSupplier;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * Keeps the objects of a {@link CacheRepository} within a size budget.
+ *
+ * Once the objects take more space than the budget, the least recently used ones are deleted until
+ * they fit into 80% of it again, so that collection does not run again right away.
+ * Objects still referenced, as told by the reference supplier, and objects used recently are kept.
+ *
+ * Collection runs on a background thread and deletes objects in small batches, each holding the
+ * repository lock only briefly, so downloads going on meanwhile are not blocked.
+ */
+public final class CacheCollector {
+
+    private static final ThreadPoolExecutor EXECUTOR = Lang.threadPool("CacheCollector", true, 1, 10, TimeUnit.SECONDS);
+
+    private static final double LOW_WATERMARK = 0.8;
+    // Objects used this recently may belong to an installation that is still going on
+    private static final long MIN_IDLE_TIME = TimeUnit.DAYS.toMillis(1);
+    private static final int BATCH_SIZE = 64;
+
+    private final CacheRepository repository;
+    private final ExceptionalSupplier<Set<String>, ? extends Exception> references;
+    private volatile long maxSize;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    /**
+     * @param maxSize    the budget, in bytes
+     * @param references SHA-1 of the objects which must be kept, only asked for when the budget is exceeded
+     */
+    public CacheCollector(CacheRepository repository, long maxSize, ExceptionalSupplier<Set<String>, ? extends Exception> references) {
+        this.repository = repository;
+        this.maxSize = maxSize;
+        this.references = references;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Start collecting in the background, unless a collection is already running.
+     *
+     * @return the number of bytes freed
+     */
+    public CompletableFuture<Long> collectAsync() {
+        if (!running.compareAndSet(false, true))
+            return CompletableFuture.completedFuture(0L);
+
+        return CompletableFuture.supplyAsync(Lang.wrap(this::collect), EXECUTOR)
+                .whenComplete((freed, e) -> {
+                    running.set(false);
+                    if (e != null)
+                        Logging.LOG.log(Level.WARNING, "Unable to collect cached files", e);
+                    else if (freed > 0)
+                        Logging.LOG.info("Freed " + freed + " bytes of cached files");
+                });
+    }
+
+    /**
+     * @return the number of bytes freed
+     */
+    public long collect() throws Exception {
+        Path objects = repository.getCacheDirectory().resolve(CacheRepository.SHA1);
+        if (!Files.isDirectory(objects))
+            return 0;
+
+        List<CachedObject> cached = new ArrayList<>();
+        long total = 0;
+        try (DirectoryStream<Path> buckets = Files.newDirectoryStream(objects)) {
+            for (Path bucket : buckets) {
+                if (!Files.isDirectory(bucket))
+                    continue;
+                String prefix = bucket.getFileName().toString().toLowerCase(Locale.ROOT);
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(bucket)) {
+                    for (Path file : files) {
+                        String hash = file.getFileName().toString().toLowerCase(Locale.ROOT);
+                        if (!hash.startsWith(prefix))
+                            continue;
+                        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                        if (!attributes.isRegularFile())
+                            continue;
+                        long lastAccess = repository.getLastAccessTime(hash, attributes.lastModifiedTime().toMillis());
+                        cached.add(new CachedObject(hash, attributes.size(), lastAccess));
+                        total += attributes.size();
+                    }
+                }
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+            }
+        }
+
+        long freed = 0;
+        if (total > maxSize) {
+            Set<String> referenced = new HashSet<>();
+            for (String hash : references.get())
+                if (hash != null)
+                    referenced.add(hash.toLowerCase(Locale.ROOT));
+            long target = (long) (maxSize * LOW_WATERMARK);
+            long idleBefore = System.currentTimeMillis() - MIN_IDLE_TIME;
+            cached.sort(Comparator.comparingLong(object -> object.lastAccess));
+
+            Set<String> batch = new HashSet<>();
+            for (CachedObject object : cached) {
+                if (total - freed <= target || object.lastAccess > idleBefore)
+                    break;
+                if (referenced.contains(object.hash))
+                    continue;
+
+                batch.add(object.hash);
+                freed += object.size;
+                if (batch.size() >= BATCH_SIZE) {
+                    repository.evict(batch);
+                    batch = new HashSet<>();
+                    if (Thread.interrupted())
+                        throw new InterruptedException();
+                }
+            }
+            if (!batch.isEmpty())
+                repository.evict(batch);
+        }
+
+        repository.saveAccessTimes();
+        return freed;
+    }
+
+    private static final class CachedObject {
+        private final String hash;
+        private final long size;
+        private final long lastAccess;
+
+        CachedObject(String hash, long size, long lastAccess) {
+            this.hash = hash;
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -26,6 +26,7 @@ import com.tungsten.fclcore.util.function.ExceptionalSupplier;
 import com.tungsten.fclcore.util.gson.JsonUtils;
 import com.tungsten.fclcore.util.io.FileUtils;
 import com.tungsten.fclcore.util.io.IOUtils;
+import com.tungsten.fclcore.util.io.JsonJournal;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -54,7 +55,20 @@ public class CacheRepository {
     private Path commonDirectory;
     private Path cacheDirectory;
     private Path indexFile;
+    private JsonJournal<ETagItem> journal;
     private Map<String, ETagItem> index;
+    private Path accessFile;
+    // hash -> time the cached object was last used, in milliseconds
+    private final Map<String, Long> accessTimes = new ConcurrentHashMap<>();
+    // Uses of cached objects come in bursts, like during an installation, so they are saved together a while later
+    private final InvocationDispatcher<Object> accessTimesSaver = InvocationDispatcher.runOn(Lang::thread, ignored -> {
+        try {
+            Thread.sleep(ACCESS_TIMES_SAVE_DELAY);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        saveAccessTimes();
+    });
     private final Map<String, Storage> storages = new HashMap<>();
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
@@ -62,6 +76,7 @@ public class CacheRepository {
         commonDirectory = commonDir;
         cacheDirectory = commonDir.resolve("cache");
         indexFile = cacheDirectory.resolve("etag.json");
+        accessFile = cacheDirectory.resolve("access.json");
 
         lock.writeLock().lock();
         try {
@@ -80,10 +95,41 @@ public class CacheRepository {
         } catch (IOException | JsonParseException e) {
             LOG.log(Level.WARNING, "Unable to read index file", e);
             index = new HashMap<>();
+        }
+
+        try {
+            // Changes made since etag.json was last written
+            journal = new JsonJournal<>(cacheDirectory.resolve("etag.journal"), ETagItem.class);
+            journal.replay(this::applyChange);
+            if (journal.size() >= MAX_JOURNAL_SIZE)
+                saveETagIndex();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to compact etag index", e);
         } finally {
             lock.writeLock().unlock();
         }
 
+        accessTimes.clear();
+        try {
+            if (Files.isRegularFile(accessFile)) {
+                Map<String, Long> raw = JsonUtils.GSON.fromJson(FileUtils.readText(accessFile), new TypeToken<Map<String, Long>>() {
+                }.getType());
+                if (raw != null)
+                    raw.forEach((hash, time) -> {
+                        if (hash != null && time != null)
+                            accessTimes.put(hash, time);
+                    });
+            }
+        } catch (IOException | JsonParseException e) {
+            LOG.log(Level.WARNING, "Unable to read access times of cached files", e);
+        }
+    }
+
+    private void applyChange(ETagItem item) {
+        if (item.isRemoval())
+            index.remove(item.url);
+        else
+            index.compute(item.url, updateEntity(item));
     }
 
     public Path getCommonDirectory() {
@@ -112,7 +158,10 @@ public class CacheRepository {
         Path file = getFile(algorithm, hash);
         if (Files.exists(file)) {
             try {
-                return DigestUtils.digestToString(algorithm, file).equalsIgnoreCase(hash);
+                if (!DigestUtils.digestToString(algorithm, file).equalsIgnoreCase(hash))
+                    return false;
+                touch(hash);
+                return true;
             } catch (IOException e) {
                 return false;
             }
@@ -123,6 +172,7 @@ public class CacheRepository {
 
     public void tryCacheFile(Path path, String algorithm, String hash) throws IOException {
         Path cache = getFile(algorithm, hash);
+        touch(hash);
         if (Files.isRegularFile(cache)) return;
         FileUtils.copyFile(path, cache);
     }
@@ -130,9 +180,68 @@ public class CacheRepository {
     public Path cacheFile(Path path, String algorithm, String hash) throws IOException {
         Path cache = getFile(algorithm, hash);
         FileUtils.copyFile(path, cache);
+        touch(hash);
         return cache;
     }
 
+    /**
+     * Record that the cached object with the given hash has been used.
+     */
+    protected void touch(String hash) {
+        accessTimes.put(hash.toLowerCase(Locale.ROOT), System.currentTimeMillis());
+        accessTimesSaver.accept(hash);
+    }
+
+    /**
+     * @param defaultValue used for objects which have not been used since access times were first recorded
+     * @return the time the cached object with the given hash was last used, in milliseconds
+     */
+    long getLastAccessTime(String hash, long defaultValue) {
+        return accessTimes.getOrDefault(hash, defaultValue);
+    }
+
+    void saveAccessTimes() {
+        if (accessFile == null) return;
+        try {
+            Files.createDirectories(accessFile.getParent());
+            FileUtils.saveSafely(accessFile, JsonUtils.UGLY_GSON.toJson(new HashMap<>(accessTimes)));
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to save access times of cached files", e);
+        }
+    }
+
+    /**
+     * Delete cached objects, together with index entries pointing at them.
+     * Objects hard linked into game directories stay available there.
+     *
+     * @param hashes SHA-1 of the objects to delete
+     */
+    protected void evict(Set<String> hashes) {
+        lock.writeLock().lock();
+        try {
+            List<ETagItem> removals = new ArrayList<>();
+            for (Iterator<ETagItem> iterator = index.values().iterator(); iterator.hasNext(); ) {
+                ETagItem item = iterator.next();
+                if (item.hash != null && hashes.contains(item.hash.toLowerCase(Locale.ROOT))) {
+                    iterator.remove();
+                    removals.add(ETagItem.removal(item.url));
+                }
+            }
+            appendChanges(removals);
+
+            for (String hash : hashes) {
+                try {
+                    Files.deleteIfExists(getFile(SHA1, hash));
+                    accessTimes.remove(hash);
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "Unable to delete cached file " + hash, e);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
     public Optional<Path> checkExistentFile(Path original, String algorithm, String hash) {
         if (fileExists(algorithm, hash))
             return Optional.of(getFile(algorithm, hash));
@@ -183,11 +292,12 @@ public class CacheRepository {
 
     public void removeRemoteEntry(URLConnection conn) {
         String url = conn.getURL().toString();
-        lock.readLock().lock();
+        lock.writeLock().lock();
         try {
-            index.remove(url);
+            if (index.remove(url) != null)
+                appendChanges(Collections.singletonList(ETagItem.removal(url)));
         } finally {
-            lock.readLock().unlock();
+            lock.writeLock().unlock();
         }
     }
 
@@ -228,18 +338,19 @@ public class CacheRepository {
         }, conn);
     }
 
-    public synchronized void cacheData(ExceptionalSupplier<CacheResult, IOException> cacheSupplier, URLConnection conn) throws IOException {
+    public void cacheData(ExceptionalSupplier<CacheResult, IOException> cacheSupplier, URLConnection conn) throws IOException {
         String eTag = conn.getHeaderField("ETag");
         if (eTag == null) return;
         String url = conn.getURL().toString();
         String lastModified = conn.getHeaderField("Last-Modified");
         CacheResult cacheResult = cacheSupplier.get();
+        touch(cacheResult.hash);
         ETagItem eTagItem = new ETagItem(url, eTag, cacheResult.hash, Files.getLastModifiedTime(cacheResult.cachedFile).toMillis(), lastModified);
         Lock writeLock = lock.writeLock();
         writeLock.lock();
         try {
-            index.compute(eTagItem.url, updateEntity(eTagItem));
-            saveETagIndex();
+            if (index.compute(eTagItem.url, updateEntity(eTagItem)) == eTagItem)
+                appendChanges(Collections.singletonList(eTagItem));
         } finally {
             writeLock.unlock();
         }
@@ -260,11 +371,13 @@ public class CacheRepository {
             if (oldItem == null) {
                 return newItem;
             } else if (oldItem.compareTo(newItem) < 0) {
-                Path cached = getFile(SHA1, oldItem.hash);
-                try {
-                    Files.deleteIfExists(cached);
-                } catch (IOException e) {
-                    LOG.log(Level.WARNING, "Cannot delete old file");
+                if (oldItem.hash != null && !oldItem.hash.equals(newItem.hash)) {
+                    Path cached = getFile(SHA1, oldItem.hash);
+                    try {
+                        Files.deleteIfExists(cached);
+                    } catch (IOException e) {
+                        LOG.log(Level.WARNING, "Cannot delete old file");
+                    }
                 }
                 return newItem;
             } else {
@@ -287,26 +400,39 @@ public class CacheRepository {
         return eTags;
     }
 
+    /**
+     * Append a change to the journal, and merge the journal into etag.json once it gets long.
+     * Must hold the write lock.
+     */
+    private void appendChanges(List<ETagItem> changes) {
+        if (journal == null || changes.isEmpty()) return;
+        try {
+            journal.append(changes);
+            if (journal.size() >= MAX_JOURNAL_SIZE)
+                saveETagIndex();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to save " + journal.getFile(), e);
+        }
+    }
+
+    /**
+     * Write the whole index to etag.json and clear the journal.
+     */
     public void saveETagIndex() throws IOException {
-        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
-            FileLock lock = channel.lock();
-            try {
-                ETagIndex indexOnDisk = JsonUtils.fromMaybeMalformedJson(new String(IOUtils.readFullyWithoutClosing(Channels.newInputStream(channel)), UTF_8), ETagIndex.class);
-                Map<String, ETagItem> newIndex = joinETagIndexes(indexOnDisk == null ? null : indexOnDisk.eTag, index.values());
-                channel.truncate(0);
-                ByteBuffer writeTo = ByteBuffer.wrap(JsonUtils.GSON.toJson(new ETagIndex(newIndex.values())).getBytes(UTF_8));
-                while (writeTo.hasRemaining()) {
-                    if (channel.write(writeTo) == 0) {
-                        throw new IOException("No value is written");
-                    }
-                }
-                this.index = newIndex;
-            } finally {
-                lock.release();
-            }
+        lock.writeLock().lock();
+        try {
+            Files.createDirectories(indexFile.getParent());
+            FileUtils.saveSafely(indexFile, JsonUtils.GSON.toJson(new ETagIndex(index.values())));
+            if (journal != null)
+                journal.clear();
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
+    private static final int MAX_JOURNAL_SIZE = 256;
+    private static final long ACCESS_TIMES_SAVE_DELAY = 30 * 1000;
+
     private static final class ETagIndex {
         private final Collection<ETagItem> eTag;
 
@@ -343,6 +469,17 @@ public class CacheRepository {
             this.remoteLastModified = remoteLastModified;
         }
 
+        /**
+         * A journal record telling that the entry of the given URL has been removed.
+         */
+        static ETagItem removal(String url) {
+            return new ETagItem(url, null, null, 0, null);
+        }
+
+        boolean isRemoval() {
+            return eTag == null;
+        }
+
         public int compareTo(ETagItem other) {
             if (!url.equals(other.url))
                 throw new IllegalArgumentException();
@@ -6,7 +6,10 @@ import com.tungsten.fclcore.game.Library;
 import com.tungsten.fclcore.game.Version;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class LibFilter {
 
@@ -45,35 +48,216 @@ public class LibFilter {
     private static final Library JNA_5_13 = GSON.fromJson(JNA_5_13_STRING, Library.class);
     private static final Library OSHI_6_3 = GSON.fromJson(OSHI_6_3_STRING, Library.class);
 
+    /**
+     * Rules rewriting the libraries of every version, one per line:
+     * <pre>
+     * drop    group:artifact
+     * replace group:artifact versionRange replacement
+     * </pre>
+     * A group of "*" matches any group, and a group ending with "*" matches groups starting with the rest.
+     * Version ranges are written as in Maven, like "[6.2,6.3)", and either bound may be left out.
+     * Replacements are looked up by name among the libraries bundled above.
+     */
+    private static final String RULES = "" +
+            "drop org.lwjgl*:*\n" +
+            "drop *:jinput-platform\n" +
+            "drop *:twitch-platform\n" +
+            "replace *:asm-all (,5) org.ow2.asm:asm-all:5.0.4\n" +
+            "replace net.java.dev.jna:jna (,5.13) net.java.dev.jna:jna:5.13.0\n" +
+            "replace com.github.oshi:oshi-core [6.2,6.3) com.github.oshi:oshi-core:6.3.0\n";
+
+    private static final RuleSet RULE_SET = RuleSet.compile(RULES, ASM_ALL_5_0_4, JNA_5_13, OSHI_6_3);
+
     public static Version filter(Version version) {
-        return version.setLibraries(filterLibs(version.getLibraries()));
+        List<Library> libraries = version.getLibraries();
+        List<Library> filtered = filterLibs(libraries);
+        return filtered == libraries ? version : version.setLibraries(filtered);
     }
 
+    /**
+     * @return the filtered libraries, or {@code libraries} itself if no rule applies
+     */
     public static List<Library> filterLibs(List<Library> libraries) {
-        ArrayList<Library> newLibraries = new ArrayList<>();
-        for (Library library : libraries) {
-            if (!library.getName().contains("org.lwjgl") && !library.getName().contains("jinput-platform") && !library.getName().contains("twitch-platform")) {
-                String[] version = library.getName().split(":")[2].split("\\.");
-                if (library.getArtifactId().equals("asm-all") && Integer.parseInt(version[0]) < 5) {
-                    newLibraries.add(ASM_ALL_5_0_4);
-                } else if (library.getName().startsWith("net.java.dev.jna:jna:")) {
-                    if (Integer.parseInt(version[0]) >= 5 && Integer.parseInt(version[1]) >= 13) {
-                        newLibraries.add(library);
-                    } else {
-                        newLibraries.add(JNA_5_13);
-                    }
-                } else if (library.getName().startsWith("com.github.oshi:oshi-core:")) {
-                    if (Integer.parseInt(version[0]) != 6 || Integer.parseInt(version[1]) != 2) {
-                        newLibraries.add(library);
-                    } else {
-                        newLibraries.add(OSHI_6_3);
-                    }
+        List<Library> newLibraries = null;
+        for (int i = 0; i < libraries.size(); i++) {
+            Library library = libraries.get(i);
+            Library result = RULE_SET.apply(library);
+            if (result != library && newLibraries == null) {
+                newLibraries = new ArrayList<>(libraries.size());
+                newLibraries.addAll(libraries.subList(0, i));
+            }
+            if (newLibraries != null && result != null)
+                newLibraries.add(result);
+        }
+        return newLibraries == null ? libraries : newLibraries;
+    }
+
+    private static final class RuleSet {
+        // group -> artifact -> rules
+        private final Map<String, Map<String, List<Rule>>> byGroup = new HashMap<>();
+        // artifact -> rules matching any group
+        private final Map<String, List<Rule>> anyGroup = new HashMap<>();
+        private final List<Rule> groupPrefixes = new ArrayList<>();
+
+        static RuleSet compile(String rules, Library... replacements) {
+            Map<String, Library> bundled = new HashMap<>();
+            for (Library library : replacements)
+                bundled.put(library.getName(), library);
+
+            RuleSet ruleSet = new RuleSet();
+            for (String line : rules.split("\n")) {
+                line = line.trim();
+                if (line.isEmpty())
+                    continue;
+                String[] tokens = line.split(" +");
+                String[] coordinate = tokens[1].split(":");
+                Rule rule;
+                if (tokens[0].equals("drop") && tokens.length == 2) {
+                    rule = new Rule(coordinate[0], coordinate[1], null, null, false, false, null);
+                } else if (tokens[0].equals("replace") && tokens.length == 4) {
+                    String range = tokens[2];
+                    String[] bounds = range.substring(1, range.length() - 1).split(",", -1);
+                    Library replacement = bundled.get(tokens[3]);
+                    if (bounds.length != 2 || replacement == null)
+                        throw new IllegalArgumentException("Malformed library rule: " + line);
+                    rule = new Rule(coordinate[0], coordinate[1],
+                            bounds[0].isEmpty() ? null : parseVersion(bounds[0]),
+                            bounds[1].isEmpty() ? null : parseVersion(bounds[1]),
+                            range.charAt(0) == '[', range.charAt(range.length() - 1) == ']',
+                            replacement);
                 } else {
-                    newLibraries.add(library);
+                    throw new IllegalArgumentException("Malformed library rule: " + line);
                 }
+                ruleSet.add(rule);
+            }
+            return ruleSet;
+        }
+
+        private void add(Rule rule) {
+            if (rule.group.equals("*"))
+                anyGroup.computeIfAbsent(rule.artifact, key -> new ArrayList<>()).add(rule);
+            else if (rule.group.endsWith("*"))
+                groupPrefixes.add(rule);
+            else
+                byGroup.computeIfAbsent(rule.group, key -> new HashMap<>())
+                        .computeIfAbsent(rule.artifact, key -> new ArrayList<>()).add(rule);
+        }
+
+        /**
+         * @return the library to use instead, {@code library} itself if unchanged, or null if dropped
+         */
+        Library apply(Library library) {
+            String group = library.getGroupId();
+            String artifact = library.getArtifactId();
+
+            for (Rule rule : groupPrefixes)
+                if (group.startsWith(rule.groupPrefix()) && rule.matchesArtifact(artifact) && rule.matchesVersion(library.getVersion()))
+                    return rule.replacement;
+
+            Map<String, List<Rule>> artifacts = byGroup.get(group);
+            Library result = apply(artifacts == null ? null : artifacts.get(artifact), library);
+            if (result != library)
+                return result;
+            return apply(anyGroup.get(artifact), library);
+        }
+
+        private static Library apply(List<Rule> rules, Library library) {
+            if (rules != null)
+                for (Rule rule : rules)
+                    if (rule.matchesVersion(library.getVersion()))
+                        return rule.replacement;
+            return library;
+        }
+    }
+
+    private static final class Rule {
+        private final String group;
+        private final String artifact;
+        private final int[] lowerBound;
+        private final int[] upperBound;
+        private final boolean lowerInclusive;
+        private final boolean upperInclusive;
+        private final Library replacement; // null to drop the library
+
+        Rule(String group, String artifact, int[] lowerBound, int[] upperBound, boolean lowerInclusive, boolean upperInclusive, Library replacement) {
+            this.group = group;
+            this.artifact = artifact;
+            this.lowerBound = lowerBound;
+            this.upperBound = upperBound;
+            this.lowerInclusive = lowerInclusive;
+            this.upperInclusive = upperInclusive;
+            this.replacement = replacement;
+        }
+
+        String groupPrefix() {
+            return group.substring(0, group.length() - 1);
+        }
+
+        boolean matchesArtifact(String artifact) {
+            return this.artifact.equals("*") || this.artifact.equals(artifact);
+        }
+
+        boolean matchesVersion(String version) {
+            if (lowerBound == null && upperBound == null)
+                return true;
+            int[] parsed = version == null ? null : parseVersion(version);
+            if (parsed == null)
+                return false;
+            if (lowerBound != null) {
+                int c = compareVersions(parsed, lowerBound);
+                if (c < 0 || c == 0 && !lowerInclusive)
+                    return false;
             }
+            if (upperBound != null) {
+                int c = compareVersions(parsed, upperBound);
+                if (c > 0 || c == 0 && !upperInclusive)
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Parse the leading numeric components of a version, "5.13.2-beta" becomes [5, 13, 2].
+     *
+     * @return the components, or null if the version does not start with a number
+     */
+    private static int[] parseVersion(String version) {
+        int[] components = new int[4];
+        int count = 0;
+        int value = 0;
+        boolean digits = false;
+        for (int i = 0; i < version.length(); i++) {
+            char ch = version.charAt(i);
+            if (ch >= '0' && ch <= '9') {
+                value = value * 10 + (ch - '0');
+                digits = true;
+            } else if (ch == '.' && digits) {
+                if (count == components.length)
+                    components = Arrays.copyOf(components, count * 2);
+                components[count++] = value;
+                value = 0;
+                digits = false;
+            } else {
+                break;
+            }
+        }
+        if (digits) {
+            if (count == components.length)
+                components = Arrays.copyOf(components, count + 1);
+            components[count++] = value;
+        }
+        return count == 0 ? null : Arrays.copyOf(components, count);
+    }
+
+    private static int compareVersions(int[] a, int[] b) {
+        for (int i = 0; i < Math.max(a.length, b.length); i++) {
+            int x = i < a.length ? a[i] : 0;
+            int y = i < b.length ? b[i] : 0;
+            if (x != y)
+                return Integer.compare(x, y);
         }
-        return newLibraries;
+        return 0;
     }
 
-}
\ No newline at end of file
+}
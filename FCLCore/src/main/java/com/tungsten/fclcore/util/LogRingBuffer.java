@@ -0,0 +1,141 @@
+package com.tungsten.fclcore.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+
+/**
+ * Bytes of the most recent log output, up to a fixed capacity.
+ *
+ * Output is kept in segments of a fixed size, allocated on demand. Once the capacity is reached, the oldest
+ * bytes are dropped, a whole segment at a time when possible. Bytes are never changed once written, so readers
+ * only take the segments under the lock and copy them out after releasing it, without blocking writers.
+ * Once something has been dropped, readers skip the partial first line so that output always starts
+ * at a line boundary.
+ */
+final class LogRingBuffer {
+
+    private final int segmentSize;
+    private final int capacity;
+    private final ArrayDeque<byte[]> segments = new ArrayDeque<>();
+    // offset of the first byte in the first segment
+    private int headOffset = 0;
+    // number of bytes written to the last segment
+    private int tailLength = 0;
+    private int size = 0;
+    private boolean truncated = false;
+
+    LogRingBuffer(int segmentSize, int capacity) {
+        this.segmentSize = Math.min(segmentSize, capacity);
+        this.capacity = capacity;
+    }
+
+    synchronized void write(byte[] b, int off, int len) {
+        if (len > capacity) {
+            off += len - capacity;
+            len = capacity;
+            truncated = true;
+        }
+
+        while (len > 0) {
+            if (segments.isEmpty() || tailLength == segmentSize) {
+                segments.addLast(new byte[segmentSize]);
+                tailLength = 0;
+            }
+            int n = Math.min(len, segmentSize - tailLength);
+            System.arraycopy(b, off, segments.getLast(), tailLength, n);
+            tailLength += n;
+            size += n;
+            off += n;
+            len -= n;
+        }
+
+        while (size > capacity) {
+            // The last segment is never dropped here, since it holds at most segmentSize <= capacity bytes
+            int available = segmentSize - headOffset;
+            int excess = size - capacity;
+            if (excess >= available) {
+                segments.removeFirst();
+                headOffset = 0;
+                size -= available;
+            } else {
+                headOffset += excess;
+                size -= excess;
+            }
+            truncated = true;
+        }
+    }
+
+    private synchronized Snapshot snapshot() {
+        return new Snapshot(segments.toArray(new byte[0][]), headOffset, tailLength, truncated);
+    }
+
+    byte[] toByteArray() {
+        Snapshot snapshot = snapshot();
+        byte[] result = new byte[snapshot.length()];
+        int position = 0;
+        for (int i = snapshot.first; i < snapshot.segments.length; i++) {
+            int from = snapshot.from(i);
+            int length = snapshot.to(i) - from;
+            System.arraycopy(snapshot.segments[i], from, result, position, length);
+            position += length;
+        }
+        return result;
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        Snapshot snapshot = snapshot();
+        for (int i = snapshot.first; i < snapshot.segments.length; i++) {
+            int from = snapshot.from(i);
+            out.write(snapshot.segments[i], from, snapshot.to(i) - from);
+        }
+    }
+
+    /**
+     * Segments as they were at one point, with the partial first line skipped if something has been dropped.
+     */
+    private static final class Snapshot {
+        private final byte[][] segments;
+        private final int tailLength;
+        // first segment and offset in it to be read
+        private int first = 0;
+        private int headOffset;
+
+        Snapshot(byte[][] segments, int headOffset, int tailLength, boolean truncated) {
+            this.segments = segments;
+            this.headOffset = headOffset;
+            this.tailLength = tailLength;
+            if (truncated)
+                skipFirstLine();
+        }
+
+        private void skipFirstLine() {
+            for (int i = first; i < segments.length; i++) {
+                byte[] segment = segments[i];
+                for (int j = from(i), end = to(i); j < end; j++) {
+                    if (segment[j] == '\n') {
+                        first = i;
+                        headOffset = j + 1;
+                        return;
+                    }
+                }
+            }
+            first = segments.length;
+        }
+
+        int from(int index) {
+            return index == first ? headOffset : 0;
+        }
+
+        int to(int index) {
+            return index == segments.length - 1 ? tailLength : segments[index].length;
+        }
+
+        int length() {
+            int length = 0;
+            for (int i = first; i < segments.length; i++)
+                length += to(i) - from(i);
+            return length;
+        }
+    }
+}
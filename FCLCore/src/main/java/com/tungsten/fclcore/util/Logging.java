@@ -20,12 +20,15 @@ package com.tungsten.fclcore.util;
 import com.tungsten.fclcore.util.io.IOUtils;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.logging.*;
 
 public final class Logging {
@@ -33,67 +36,73 @@ public final class Logging {
     }
 
     public static final Logger LOG = Logger.getLogger("FCL");
-    private static final ByteArrayOutputStream storedLogs = new ByteArrayOutputStream(IOUtils.DEFAULT_BUFFER_SIZE);
+    private static final int MAX_STORED_LOGS_SIZE = 8 * 1024 * 1024;
+    private static final LogRingBuffer storedLogs = new LogRingBuffer(IOUtils.DEFAULT_BUFFER_SIZE, MAX_STORED_LOGS_SIZE);
+    private static volatile AsyncLogHandler handler;
 
-    private static volatile String[] accessTokens = new String[0];
+    private static final String ACCESS_TOKEN_REPLACEMENT = "<access token>";
+    private static final Set<String> accessTokens = new LinkedHashSet<>();
+    private static volatile Redactor accessTokenRedactor = Redactor.of(Collections.emptySet(), ACCESS_TOKEN_REPLACEMENT);
 
     public static synchronized void registerAccessToken(String token) {
-        final String[] oldAccessTokens = accessTokens;
-        final String[] newAccessTokens = Arrays.copyOf(oldAccessTokens, oldAccessTokens.length + 1);
+        if (token == null || token.isEmpty() || !accessTokens.add(token))
+            return;
 
-        newAccessTokens[oldAccessTokens.length] = token;
-
-        accessTokens = newAccessTokens;
+        accessTokenRedactor = Redactor.of(accessTokens, ACCESS_TOKEN_REPLACEMENT);
     }
 
+    /**
+     * Replace all registered access tokens in the message.
+     *
+     * @return the filtered message, or {@code message} itself if it does not contain any token
+     */
     public static String filterForbiddenToken(String message) {
-        for (String token : accessTokens)
-            message = message.replace(token, "<access token>");
-        return message;
+        return accessTokenRedactor.redact(message);
+    }
+
+    /**
+     * Wrap a stream of UTF-8 text so that registered access tokens are replaced while it is written.
+     *
+     * @see Redactor#redacting(OutputStream)
+     */
+    public static OutputStream filterForbiddenToken(OutputStream out) {
+        return accessTokenRedactor.redacting(out);
     }
 
     public static void start(Path logFolder) {
         LOG.setLevel(Level.ALL);
         LOG.setUseParentHandlers(false);
-        LOG.setFilter(record -> {
-            record.setMessage(format(record));
-            return true;
-        });
 
-        DefaultFormatter formatter = new DefaultFormatter();
+        OutputStream logFile = null;
         try {
             if (Files.isRegularFile(logFolder))
                 Files.delete(logFolder);
 
             Files.createDirectories(logFolder);
-            FileHandler fileHandler = new FileHandler(logFolder.resolve("fcl.log").toAbsolutePath().toString());
-            fileHandler.setLevel(Level.FINEST);
-            fileHandler.setFormatter(formatter);
-            fileHandler.setEncoding("UTF-8");
-            LOG.addHandler(fileHandler);
+            logFile = new BufferedOutputStream(Files.newOutputStream(logFolder.resolve("fcl.log")), IOUtils.DEFAULT_BUFFER_SIZE);
         } catch (IOException e) {
             System.err.println("Unable to create fcl.log\n" + StringUtils.getStackTrace(e));
         }
 
-        ConsoleHandler consoleHandler = new ConsoleHandler();
-        consoleHandler.setFormatter(formatter);
-        consoleHandler.setLevel(Level.FINER);
-        LOG.addHandler(consoleHandler);
-
-        StreamHandler streamHandler = new StreamHandler(storedLogs, formatter) {
-            @Override
-            public synchronized void publish(LogRecord record) {
-                super.publish(record);
-                flush();
+        AsyncLogHandler asyncHandler = new AsyncLogHandler(logFile, storedLogs);
+        asyncHandler.setLevel(Level.ALL);
+        LOG.addHandler(asyncHandler);
+        handler = asyncHandler;
+
+        Runtime.getRuntime().addShutdownHook(new Thread(asyncHandler::close));
+
+        // Shutdown hooks do not run when Android kills the process after a crash
+        Thread.UncaughtExceptionHandler crashHandler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, throwable) -> {
+            asyncHandler.flush();
+            if (crashHandler != null) {
+                crashHandler.uncaughtException(thread, throwable);
+            } else {
+                // What ThreadGroup does without a default handler
+                System.err.print("Exception in thread \"" + thread.getName() + "\" ");
+                throwable.printStackTrace(System.err);
             }
-        };
-        try {
-            streamHandler.setEncoding("UTF-8");
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
-        }
-        streamHandler.setLevel(Level.ALL);
-        LOG.addHandler(streamHandler);
+        });
     }
 
     public static void initForTest() {
@@ -106,21 +115,38 @@ public final class Logging {
         LOG.addHandler(consoleHandler);
     }
 
+    /**
+     * Wait until all records logged so far have been written.
+     */
+    public static void flush() {
+        AsyncLogHandler asyncHandler = handler;
+        if (asyncHandler != null)
+            asyncHandler.flush();
+    }
+
+    /**
+     * @return the most recent launcher logs, at most {@value #MAX_STORED_LOGS_SIZE} bytes
+     */
     public static byte[] getRawLogs() {
+        flush();
         return storedLogs.toByteArray();
     }
 
+    /**
+     * Write the most recent launcher logs to the stream without copying them first.
+     */
+    public static void writeLogs(OutputStream out) throws IOException {
+        flush();
+        storedLogs.writeTo(out);
+    }
+
     public static String getLogs() {
-        try {
-            return storedLogs.toString("UTF-8");
-        } catch (UnsupportedEncodingException e) {
-            throw new InternalError(e);
-        }
+        return new String(getRawLogs(), StandardCharsets.UTF_8);
     }
 
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
 
-    private static String format(LogRecord record) {
+    static String format(LogRecord record) {
         String message = filterForbiddenToken(record.getMessage());
 
         StringBuilder builder = new StringBuilder(128 + message.length());
@@ -0,0 +1,327 @@
+package com.tungsten.fclcore.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Replaces every occurrence of a fixed set of secrets in a text.
+ *
+ * The secrets are compiled into an Aho-Corasick automaton, so a text is scanned once
+ * regardless of how many secrets there are. Overlapping occurrences are resolved leftmost-longest.
+ * Texts without any secret are returned as is, without allocating.
+ *
+ * Instances are immutable; create a new one when the secrets change.
+ */
+public final class Redactor {
+
+    private static final int ROOT = 0;
+    private static final int ASCII = 128;
+    // Longer lines are written out in parts when redacting a stream
+    private static final int MAX_BUFFERED_LINE = 64 * 1024;
+
+    private final String replacement;
+    private final int maxSecretBytes;
+
+    // Node i has children keys[i][k] -> children[i][k], keys sorted
+    private final char[][] keys;
+    private final int[][] children;
+    private final int[] rootAscii;
+    private final int[] fail;
+    private final int[] depth;
+    // Length of the longest secret which is a suffix of the node, 0 if none
+    private final int[] matchLength;
+
+    private Redactor(Collection<String> secrets, String replacement) {
+        this.replacement = replacement;
+
+        int maxSecretBytes = 0;
+        for (String secret : secrets)
+            maxSecretBytes = Math.max(maxSecretBytes, secret.getBytes(StandardCharsets.UTF_8).length);
+        this.maxSecretBytes = maxSecretBytes;
+
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> depths = new ArrayList<>();
+        List<Integer> terminals = new ArrayList<>();
+        trie.add(new HashMap<>());
+        depths.add(0);
+        terminals.add(0);
+
+        for (String secret : secrets) {
+            int node = ROOT;
+            for (int i = 0; i < secret.length(); i++) {
+                Integer next = trie.get(node).get(secret.charAt(i));
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new HashMap<>());
+                    depths.add(i + 1);
+                    terminals.add(0);
+                    trie.get(node).put(secret.charAt(i), next);
+                }
+                node = next;
+            }
+            terminals.set(node, secret.length());
+        }
+
+        int size = trie.size();
+        keys = new char[size][];
+        children = new int[size][];
+        depth = new int[size];
+        fail = new int[size];
+        matchLength = new int[size];
+        rootAscii = new int[ASCII];
+        Arrays.fill(rootAscii, -1);
+
+        for (int i = 0; i < size; i++) {
+            Map<Character, Integer> edges = trie.get(i);
+            char[] k = new char[edges.size()];
+            int j = 0;
+            for (char c : edges.keySet())
+                k[j++] = c;
+            Arrays.sort(k);
+            int[] c = new int[k.length];
+            for (j = 0; j < k.length; j++)
+                c[j] = edges.get(k[j]);
+            keys[i] = k;
+            children[i] = c;
+            depth[i] = depths.get(i);
+        }
+
+        for (int j = 0; j < keys[ROOT].length; j++) {
+            if (keys[ROOT][j] < ASCII)
+                rootAscii[keys[ROOT][j]] = children[ROOT][j];
+        }
+
+        // Breadth first, so that failure links of shallower nodes are ready
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(ROOT);
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            matchLength[node] = terminals.get(node) != 0 ? terminals.get(node) : matchLength[fail[node]];
+            for (int j = 0; j < keys[node].length; j++) {
+                int child = children[node][j];
+                fail[child] = node == ROOT ? ROOT : next(fail[node], keys[node][j]);
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * @param secrets secrets to be replaced, empty ones are ignored
+     * @param replacement the text replacing each occurrence
+     */
+    public static Redactor of(Collection<String> secrets, String replacement) {
+        Set<String> filtered = new LinkedHashSet<>();
+        for (String secret : secrets) {
+            if (secret != null && !secret.isEmpty())
+                filtered.add(secret);
+        }
+        return new Redactor(filtered, replacement);
+    }
+
+    public boolean isEmpty() {
+        return keys[ROOT].length == 0;
+    }
+
+    private int child(int node, char c) {
+        if (node == ROOT && c < ASCII)
+            return rootAscii[c];
+        char[] k = keys[node];
+        if (k.length == 0)
+            return -1;
+        int index = Arrays.binarySearch(k, c);
+        return index >= 0 ? children[node][index] : -1;
+    }
+
+    private int next(int node, char c) {
+        while (true) {
+            int child = child(node, c);
+            if (child >= 0)
+                return child;
+            if (node == ROOT)
+                return ROOT;
+            node = fail[node];
+        }
+    }
+
+    /**
+     * @return the text with all secrets replaced, or {@code text} itself if it contains none
+     */
+    public String redact(String text) {
+        if (text == null || isEmpty())
+            return text;
+
+        StringBuilder builder = null;
+        int copied = 0;
+        for (long match; (match = find(text, copied)) >= 0; ) {
+            int start = (int) (match >>> 32);
+            if (builder == null)
+                builder = new StringBuilder(text.length() + replacement.length());
+            builder.append(text, copied, start).append(replacement);
+            copied = (int) match;
+        }
+
+        if (builder == null)
+            return text;
+        return builder.append(text, copied, text.length()).toString();
+    }
+
+    /**
+     * @return the leftmost-longest match starting at or after {@code from}, as {@code start << 32 | end}, or -1 if none
+     */
+    private long find(String text, int from) {
+        int node = ROOT;
+        int length = text.length();
+        for (int i = from; i < length; i++) {
+            node = next(node, text.charAt(i));
+            if (matchLength[node] == 0)
+                continue;
+
+            // Found the leftmost end of a match. Keep going while a match starting
+            // at the same position or earlier may still end later.
+            int start = i - matchLength[node] + 1;
+            int end = i + 1;
+            for (int j = i + 1; j < length; j++) {
+                int n = next(node, text.charAt(j));
+                if (j - depth[n] + 1 > start)
+                    break;
+                node = n;
+                if (matchLength[node] != 0 && j - matchLength[node] + 1 <= start) {
+                    start = j - matchLength[node] + 1;
+                    end = j + 1;
+                }
+            }
+            return (long) start << 32 | end;
+        }
+        return -1;
+    }
+
+    /**
+     * Wrap a stream of UTF-8 text so that secrets are replaced while it is written.
+     * The text is processed line by line, only the current line is buffered. Lines longer than
+     * {@value #MAX_BUFFERED_LINE} bytes are written in parts, keeping back only what may be the start of a secret.
+     * Closing the returned stream writes out the last line and closes {@code out}.
+     */
+    public OutputStream redacting(OutputStream out) {
+        return new RedactingOutputStream(out);
+    }
+
+    private final class RedactingOutputStream extends FilterOutputStream {
+        private byte[] line = new byte[256];
+        private int length = 0;
+
+        RedactingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (isEmpty()) {
+                out.write(b, off, len);
+                return;
+            }
+
+            int from = off, end = off + len;
+            for (int i = off; i < end; i++) {
+                if (b[i] != '\n')
+                    continue;
+                if (length == 0) {
+                    writeRedacted(b, from, i + 1 - from);
+                } else {
+                    append(b, from, i + 1 - from);
+                    writeLine();
+                }
+                from = i + 1;
+            }
+            append(b, from, end - from);
+        }
+
+        private void append(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, Math.max(MAX_BUFFERED_LINE - length, 1));
+                if (length + n > line.length)
+                    line = Arrays.copyOf(line, Math.max(line.length * 2, length + n));
+                System.arraycopy(b, off, line, length, n);
+                length += n;
+                off += n;
+                len -= n;
+
+                if (length >= MAX_BUFFERED_LINE)
+                    writePartialLine();
+            }
+        }
+
+        private void writeLine() throws IOException {
+            writeRedacted(line, 0, length);
+            length = 0;
+        }
+
+        /**
+         * Write out the line except for its last bytes, which may be the start of a secret.
+         * Secrets starting before that and ending in the kept bytes are written out whole.
+         */
+        private void writePartialLine() throws IOException {
+            int split = length - (maxSecretBytes - 1);
+            // Split at a character boundary, so both parts decode as they would together
+            while (split > 0 && (line[split] & 0xC0) == 0x80)
+                split--;
+            if (split <= 0)
+                return;
+
+            String head = new String(line, 0, split, StandardCharsets.UTF_8);
+            String text = head + new String(line, split, length - split, StandardCharsets.UTF_8);
+            int limit = head.length();
+
+            StringBuilder builder = null;
+            int copied = 0;
+            for (long match; copied < limit && (match = find(text, copied)) >= 0; ) {
+                int start = (int) (match >>> 32);
+                if (start >= limit)
+                    break;
+                if (builder == null)
+                    builder = new StringBuilder(limit + replacement.length());
+                builder.append(text, copied, start).append(replacement);
+                copied = (int) match;
+            }
+
+            int written;
+            if (builder == null) {
+                out.write(line, 0, split);
+                written = split;
+            } else if (copied <= limit) {
+                out.write(builder.append(text, copied, limit).toString().getBytes(StandardCharsets.UTF_8));
+                written = split;
+            } else {
+                // The last secret goes on past the split, and its text is exactly that of the secret
+                out.write(builder.toString().getBytes(StandardCharsets.UTF_8));
+                written = split + text.substring(limit, copied).getBytes(StandardCharsets.UTF_8).length;
+            }
+
+            System.arraycopy(line, written, line, 0, length - written);
+            length -= written;
+        }
+
+        private void writeRedacted(byte[] b, int off, int len) throws IOException {
+            String text = new String(b, off, len, StandardCharsets.UTF_8);
+            String redacted = redact(text);
+            if (redacted == text)
+                out.write(b, off, len);
+            else
+                out.write(redacted.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (length > 0)
+                writeLine();
+            super.close();
+        }
+    }
+}
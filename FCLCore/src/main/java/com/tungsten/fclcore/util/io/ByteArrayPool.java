@@ -0,0 +1,39 @@
+package com.tungsten.fclcore.util.io;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A bounded pool of equally sized byte arrays, used as transfer buffers.
+ *
+ * Arrays are handed out by {@link #acquire()} and must be given back by {@link #release(byte[])}
+ * once the caller is done with them. Arrays given back while the pool is full are left to the garbage collector.
+ */
+public final class ByteArrayPool {
+
+    /**
+     * Buffers for downloads, shared by all download threads.
+     */
+    public static final ByteArrayPool DOWNLOAD = new ByteArrayPool(64 * 1024, 64);
+
+    private final int bufferSize;
+    private final ArrayBlockingQueue<byte[]> pool;
+
+    public ByteArrayPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.pool = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public byte[] acquire() {
+        byte[] buffer = pool.poll();
+        return buffer != null ? buffer : new byte[bufferSize];
+    }
+
+    public void release(byte[] buffer) {
+        if (buffer != null && buffer.length == bufferSize)
+            pool.offer(buffer);
+    }
+}
@@ -19,16 +19,18 @@ package com.tungsten.fclcore.util.io;
 
 import com.sun.nio.zipfs.ZipFileSystemProvider;
 import com.tungsten.fclcore.util.Lang;
-import com.tungsten.fclcore.util.platform.OperatingSystem;
 
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipFile;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.*;
 import java.nio.file.*;
 import java.nio.file.spi.FileSystemProvider;
@@ -91,43 +93,7 @@ public final class CompressingUtils {
     }
 
     public static Charset findSuitableEncoding(ZipFile zipFile) throws IOException {
-        if (testEncoding(zipFile, StandardCharsets.UTF_8)) return StandardCharsets.UTF_8;
-        if (OperatingSystem.NATIVE_CHARSET != StandardCharsets.UTF_8 && testEncoding(zipFile, OperatingSystem.NATIVE_CHARSET))
-            return OperatingSystem.NATIVE_CHARSET;
-
-        String[] candidates = {
-                "GB18030",
-                "Big5",
-                "Shift_JIS",
-                "EUC-JP",
-                "ISO-2022-JP",
-                "EUC-KR",
-                "ISO-2022-KR",
-                "KOI8-R",
-                "windows-1251",
-                "x-MacCyrillic",
-                "IBM855",
-                "IBM866",
-                "windows-1252",
-                "ISO-8859-1",
-                "ISO-8859-5",
-                "ISO-8859-7",
-                "ISO-8859-8",
-                "UTF-16LE", "UTF-16BE",
-                "UTF-32LE", "UTF-32BE"
-        };
-
-        for (String candidate : candidates) {
-            try {
-                Charset charset = Charset.forName(candidate);
-                if (!charset.equals(OperatingSystem.NATIVE_CHARSET) && testEncoding(zipFile, charset)) {
-                    return charset;
-                }
-            } catch (IllegalArgumentException ignored) {
-            }
-        }
-
-        throw new IOException("Cannot find suitable encoding for the zip.");
+        return ZipEncodingDetector.detect(zipFile);
     }
 
     public static ZipFile openZipFile(Path zipFile) throws IOException {
@@ -167,8 +133,10 @@ public final class CompressingUtils {
 
         public FileSystem build() throws IOException {
             if (autoDetectEncoding) {
-                if (!testEncoding(zip, encoding)) {
-                    encoding = findSuitableEncoding(zip);
+                try (ZipFile zf = openZipFile(zip, encoding)) {
+                    if (!testEncoding(zf, encoding)) {
+                        encoding = findSuitableEncoding(zf);
+                    }
                 }
             }
             return createZipFileSystem(zip, create, useTempFile, encoding);
@@ -291,4 +259,77 @@ public final class CompressingUtils {
             return Optional.empty();
         }
     }
-}
\ No newline at end of file
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int CENTRAL_DIRECTORY_SIGNATURE = 0x02014b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+
+    /**
+     * Check that the file ends with a well-formed zip end of central directory record
+     * pointing to the central directory, without reading the entries.
+     * Much cheaper than opening the zip, while still catching truncated and non-zip files.
+     * Entries are not checked, and for Zip64 archives only the presence of the Zip64 locator is checked,
+     * so use {@link #createReadOnlyZipFileSystem(Path)} where a damaged archive must be detected without a digest.
+     *
+     * @param zipFile the file to check
+     * @throws ZipException if the zip is malformed
+     * @throws IOException if the file cannot be read
+     */
+    public static void checkZipStructure(Path zipFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(zipFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < END_OF_CENTRAL_DIRECTORY_SIZE)
+                throw new ZipException("Zip file is too short: " + zipFile);
+
+            // The record is followed by a comment of at most 65535 bytes
+            int tailLength = (int) Math.min(size, END_OF_CENTRAL_DIRECTORY_SIZE + 0xFFFF);
+            long tailStart = size - tailLength;
+            ByteBuffer tail = ByteBuffer.allocate(tailLength).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, tail, tailStart);
+
+            for (int i = tailLength - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+                if (tail.getInt(i) != END_OF_CENTRAL_DIRECTORY_SIGNATURE)
+                    continue;
+                int commentLength = tail.getShort(i + 20) & 0xFFFF;
+                if (i + END_OF_CENTRAL_DIRECTORY_SIZE + commentLength > tailLength)
+                    continue;
+
+                int entries = tail.getShort(i + 10) & 0xFFFF;
+                long directorySize = tail.getInt(i + 12) & 0xFFFFFFFFL;
+                long directoryOffset = tail.getInt(i + 16) & 0xFFFFFFFFL;
+                long recordStart = tailStart + i;
+
+                if (entries == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL) {
+                    // Zip64, the real values are in another record located right before this one
+                    if (i >= ZIP64_LOCATOR_SIZE && tail.getInt(i - ZIP64_LOCATOR_SIZE) == ZIP64_LOCATOR_SIGNATURE)
+                        return;
+                    throw new ZipException("Zip64 end of central directory locator missing: " + zipFile);
+                }
+
+                if (directorySize > recordStart || directoryOffset > recordStart - directorySize)
+                    throw new ZipException("Central directory out of range: " + zipFile);
+                if (entries == 0)
+                    return;
+
+                // Data may have been prepended to the zip, so locate the directory relative to this record
+                ByteBuffer signature = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, signature, recordStart - directorySize);
+                if (signature.getInt(0) != CENTRAL_DIRECTORY_SIGNATURE)
+                    throw new ZipException("Central directory missing: " + zipFile);
+                return;
+            }
+
+            throw new ZipException("End of central directory not found: " + zipFile);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0)
+                throw new EOFException();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.tungsten.fclcore.util.io;
+
+import com.tungsten.fclcore.task.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Predicate;
+
+/**
+ * Duplicates a directory, sharing files that are never modified in place instead of copying them.
+ *
+ * Immutable files are hard linked to the source, the same way the cache repository restores cached files.
+ * Other files are copied, in parallel. When the file system does not support hard links,
+ * for example shared storage on Android, immutable files are copied too.
+ */
+public final class DirectoryCloner {
+
+    /**
+     * Archives like game jars, libraries, mods and resource packs, which are replaced rather than modified.
+     */
+    public static final Predicate<String> ARCHIVES = path -> {
+        String name = path.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".disabled"))
+            name = name.substring(0, name.length() - ".disabled".length());
+        return name.endsWith(".jar") || name.endsWith(".zip") || name.endsWith(".litemod");
+    };
+
+    private final Predicate<String> filePredicate;
+    private final Predicate<String> immutable;
+    private final ExecutorService executor;
+    private volatile boolean linkSupported = true;
+
+    /**
+     * @param filePredicate tells whether a file or directory, relative to the source, is duplicated
+     * @param immutable     tells whether a file, relative to the source, may be shared with the duplicate
+     */
+    public DirectoryCloner(Predicate<String> filePredicate, Predicate<String> immutable) {
+        this(filePredicate, immutable, Schedulers.io());
+    }
+
+    public DirectoryCloner(Predicate<String> filePredicate, Predicate<String> immutable, ExecutorService executor) {
+        this.filePredicate = filePredicate;
+        this.immutable = immutable;
+        this.executor = executor;
+    }
+
+    public void cloneDirectory(Path src, Path dest) throws IOException {
+        List<CompletableFuture<Void>> copies = new ArrayList<>();
+        try {
+            Files.walkFileTree(src, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    String relative = src.relativize(file).toString();
+                    if (!filePredicate.test(relative)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+
+                    Path destFile = dest.resolve(relative);
+                    if (immutable.test(relative) && tryLink(file, destFile)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    copies.add(CompletableFuture.runAsync(() -> {
+                        try {
+                            Files.copy(file, destFile, StandardCopyOption.REPLACE_EXISTING);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }, executor));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    String relative = src.relativize(dir).toString();
+                    if (!filePredicate.test(relative)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+
+                    Files.createDirectories(dest.resolve(relative));
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } finally {
+            awaitCopies(copies);
+        }
+    }
+
+    /**
+     * Share a single file with the duplicate, or copy it if it cannot be shared.
+     */
+    public void cloneFile(Path src, Path dest) throws IOException {
+        if (!tryLink(src, dest))
+            Files.copy(src, dest, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private boolean tryLink(Path src, Path dest) throws IOException {
+        if (!linkSupported)
+            return false;
+        try {
+            Files.deleteIfExists(dest);
+            Files.createLink(dest, src);
+            return true;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            // Not supported by this file system, or the files are on different devices
+            linkSupported = false;
+            return false;
+        }
+    }
+
+    private static void awaitCopies(List<CompletableFuture<Void>> copies) throws IOException {
+        try {
+            CompletableFuture.allOf(copies.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException)
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            throw e;
+        }
+    }
+}
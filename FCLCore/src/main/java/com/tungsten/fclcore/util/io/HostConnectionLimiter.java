@@ -0,0 +1,91 @@
+package com.tungsten.fclcore.util.io;
+
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Limits the number of concurrent connections to each host.
+ *
+ * Requests to a host wait for a permit instead of opening yet another connection, so that the
+ * connections already established are kept busy and reused rather than handshaking new ones.
+ * The same limit is used as the size of the keep-alive pool (http.maxConnections), unless set by the user.
+ * It follows the download concurrency, see {@link com.tungsten.fclcore.task.FetchTask#setDownloadExecutorConcurrency(int)}.
+ */
+public final class HostConnectionLimiter {
+
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 64;
+
+    private static volatile int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+    private static final ConcurrentHashMap<String, Semaphore> hosts = new ConcurrentHashMap<>();
+    private static final boolean USER_MAX_CONNECTIONS = System.getProperty("http.maxConnections") != null;
+
+    static {
+        updateKeepAlivePool();
+    }
+
+    private HostConnectionLimiter() {
+    }
+
+    public static int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    /**
+     * Connections already holding a permit are not affected, but new ones are limited by the new value.
+     * The keep-alive pool is only sized once, so this should be called before the first connection.
+     */
+    public static synchronized void setMaxConnectionsPerHost(int maxConnections) {
+        maxConnections = Math.max(maxConnections, 1);
+        if (maxConnectionsPerHost == maxConnections)
+            return;
+        maxConnectionsPerHost = maxConnections;
+        // Permits of the old semaphores are still released to them, and simply no longer counted
+        hosts.clear();
+        updateKeepAlivePool();
+    }
+
+    private static void updateKeepAlivePool() {
+        // HttpURLConnection keeps at most 5 idle connections by default, far fewer than we download with.
+        // Keep as many as we may open to a single host so that they are reused instead of handshaking again.
+        if (!USER_MAX_CONNECTIONS) {
+            System.setProperty("http.maxConnections", String.valueOf(maxConnectionsPerHost));
+        }
+    }
+
+    /**
+     * Wait until a connection to the host of the given URL may be opened.
+     *
+     * @return the permit, to be closed when the response has been read
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public static Permit acquire(URL url) throws InterruptedIOException {
+        String host = url.getHost().toLowerCase(Locale.ROOT) + ":" + (url.getPort() == -1 ? url.getDefaultPort() : url.getPort());
+        Semaphore semaphore = hosts.computeIfAbsent(host, key -> new Semaphore(maxConnectionsPerHost));
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a connection to " + host);
+        }
+        return new Permit(semaphore);
+    }
+
+    public static final class Permit implements AutoCloseable {
+        private Semaphore semaphore;
+
+        private Permit(Semaphore semaphore) {
+            this.semaphore = semaphore;
+        }
+
+        @Override
+        public void close() {
+            if (semaphore != null) {
+                semaphore.release();
+                semaphore = null;
+            }
+        }
+    }
+}
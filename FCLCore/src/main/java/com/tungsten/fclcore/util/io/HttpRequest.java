@@ -31,6 +31,7 @@ import com.tungsten.fclcore.util.function.ExceptionalSupplier;
 import com.tungsten.fclcore.util.gson.JsonUtils;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
@@ -141,9 +142,17 @@ public abstract class HttpRequest {
 
         public String getString() throws IOException {
             return getStringWithRetry(() -> {
-                HttpURLConnection con = createConnection();
-                con = resolveConnection(con);
-                return IOUtils.readFullyAsString("gzip".equals(con.getContentEncoding()) ? IOUtils.wrapFromGZip(con.getInputStream()) : con.getInputStream());
+                try (HostConnectionLimiter.Permit ignored = HostConnectionLimiter.acquire(new URL(url))) {
+                    HttpURLConnection con = createConnection();
+                    con = resolveConnection(con);
+                    try (InputStream stream = con.getInputStream()) {
+                        return IOUtils.readFullyAsString("gzip".equals(con.getContentEncoding()) ? IOUtils.wrapFromGZip(stream) : stream);
+                    } catch (IOException e) {
+                        // Read the error body so that the connection can be reused by the retry
+                        NetworkUtils.discard(con);
+                        throw e;
+                    }
+                }
             }, retryTimes);
         }
     }
@@ -182,30 +191,36 @@ public abstract class HttpRequest {
 
         public String getString() throws IOException {
             return getStringWithRetry(() -> {
-                HttpURLConnection con = createConnection();
-                con.setDoOutput(true);
-
-                try (OutputStream os = con.getOutputStream()) {
-                    os.write(bytes);
-                }
-
                 URL url = new URL(this.url);
+                try (HostConnectionLimiter.Permit ignored = HostConnectionLimiter.acquire(url)) {
+                    HttpURLConnection con = createConnection();
+                    con.setDoOutput(true);
 
-                if (responseCodeTester != null) {
-                    responseCodeTester.accept(url, con.getResponseCode());
-                } else {
-                    if (con.getResponseCode() / 100 != 2) {
-                        if (!ignoreHttpCode && !toleratedHttpCodes.contains(con.getResponseCode())) {
-                            try {
-                                throw new ResponseCodeException(url, con.getResponseCode(), NetworkUtils.readData(con));
-                            } catch (IOException e) {
-                                throw new ResponseCodeException(url, con.getResponseCode(), e);
+                    try (OutputStream os = con.getOutputStream()) {
+                        os.write(bytes);
+                    }
+
+                    if (responseCodeTester != null) {
+                        try {
+                            responseCodeTester.accept(url, con.getResponseCode());
+                        } catch (IOException e) {
+                            NetworkUtils.discard(con);
+                            throw e;
+                        }
+                    } else {
+                        if (con.getResponseCode() / 100 != 2) {
+                            if (!ignoreHttpCode && !toleratedHttpCodes.contains(con.getResponseCode())) {
+                                try {
+                                    throw new ResponseCodeException(url, con.getResponseCode(), NetworkUtils.readData(con));
+                                } catch (IOException e) {
+                                    throw new ResponseCodeException(url, con.getResponseCode(), e);
+                                }
                             }
                         }
                     }
-                }
 
-                return NetworkUtils.readData(con);
+                    return NetworkUtils.readData(con);
+                }
             }, retryTimes);
         }
     }
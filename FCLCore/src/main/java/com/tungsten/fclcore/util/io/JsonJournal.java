@@ -0,0 +1,143 @@
+package com.tungsten.fclcore.util.io;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.gson.JsonParseException;
+import com.tungsten.fclcore.util.Logging;
+import com.tungsten.fclcore.util.gson.JsonUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * An append-only file of records, one JSON document per line.
+ *
+ * Stores keep a snapshot of their whole state and append each change to a journal, so that saving
+ * a change costs one small write instead of rewriting the snapshot. Once the journal grows long
+ * the store writes a new snapshot and {@link #clear() clears} the journal. Records must be safe
+ * to apply twice, since a crash between writing the snapshot and clearing the journal replays
+ * records that are already part of the snapshot.
+ *
+ * A line cut short by a crash is dropped on {@link #replay(Consumer) replay}, together with anything after it.
+ */
+public final class JsonJournal<T> {
+    private final Path file;
+    private final Type type;
+    private int size = 0;
+
+    /**
+     * @param file the journal file, created on the first append
+     * @param type type of the records
+     */
+    public JsonJournal(Path file, Type type) {
+        this.file = file;
+        this.type = type;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return number of records in the journal
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Read all records in the journal, in the order they were appended.
+     * A damaged tail is cut off, so that later records are appended after the last intact one.
+     *
+     * @param consumer receives each record
+     */
+    public synchronized void replay(Consumer<? super T> consumer) {
+        size = 0;
+        long valid = 0;
+        boolean damaged = false;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file), UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                T record;
+                try {
+                    record = line.isEmpty() ? null : JsonUtils.UGLY_GSON.fromJson(line, type);
+                } catch (JsonParseException e) {
+                    record = null;
+                }
+                if (record == null) {
+                    damaged = true;
+                    break;
+                }
+                consumer.accept(record);
+                size++;
+                valid += line.getBytes(UTF_8).length + 1;
+            }
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            Logging.LOG.log(Level.WARNING, "Unable to read journal " + file, e);
+            damaged = true;
+        }
+
+        try {
+            if (damaged) {
+                Logging.LOG.warning("Journal " + file + " is damaged, keeping the first " + size + " records");
+                truncate(valid);
+            } else if (Files.size(file) < valid) {
+                // The last record misses its line separator
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                    channel.write(ByteBuffer.wrap(new byte[]{'\n'}));
+                }
+            }
+        } catch (IOException e) {
+            Logging.LOG.log(Level.WARNING, "Unable to repair journal " + file, e);
+        }
+    }
+
+    private void truncate(long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        }
+    }
+
+    /**
+     * Append records with a single write.
+     */
+    public synchronized void append(Collection<? extends T> records) throws IOException {
+        if (records.isEmpty())
+            return;
+
+        StringBuilder builder = new StringBuilder();
+        for (T record : records)
+            builder.append(JsonUtils.UGLY_GSON.toJson(record, type)).append('\n');
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null)
+            Files.createDirectories(parent);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(builder.toString().getBytes(UTF_8));
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+        size += records.size();
+    }
+
+    /**
+     * Drop all records, after they have been written to a snapshot.
+     */
+    public synchronized void clear() throws IOException {
+        Files.deleteIfExists(file);
+        size = 0;
+    }
+}
@@ -0,0 +1,179 @@
+package com.tungsten.fclcore.util.io;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Tracks how well each download host has been performing recently: response latency,
+ * transfer throughput and error rate, as moving averages.
+ *
+ * Candidate URLs are ordered by the time a typical download is expected to take from their host,
+ * penalized by the error rate. Hosts without samples are assumed to be average, and errors are
+ * forgotten over a few minutes, so that a host which failed is tried again later.
+ * Scores are compared coarsely, so candidates keep their given order unless one host is clearly better.
+ */
+public final class MirrorHealth {
+
+    private static final double ALPHA = 0.3;
+    private static final double ERROR_ALPHA = 0.25;
+    private static final long ERROR_HALF_LIFE = TimeUnit.MINUTES.toNanos(2);
+    private static final double MAX_ERROR_RATE = 0.9;
+
+    private static final double DEFAULT_LATENCY = 0.3; // seconds
+    private static final double DEFAULT_THROUGHPUT = 1024 * 1024; // bytes per second
+    private static final double TYPICAL_SIZE = 512 * 1024;
+    // Transfers shorter than this say more about latency than about throughput
+    private static final long MIN_THROUGHPUT_SAMPLE = 64 * 1024;
+    // Scores within this factor of each other are considered equal
+    private static final double SCORE_BUCKET = Math.log(1.5);
+
+    private static final ConcurrentHashMap<String, Stats> hosts = new ConcurrentHashMap<>();
+
+    private MirrorHealth() {
+    }
+
+    private static String key(URL url) {
+        return url.getHost().toLowerCase(Locale.ROOT);
+    }
+
+    private static Stats stats(URL url) {
+        return hosts.computeIfAbsent(key(url), host -> new Stats());
+    }
+
+    public static boolean isSameHost(URL a, URL b) {
+        return key(a).equals(key(b));
+    }
+
+    /**
+     * @param latency nanoseconds from opening the connection until the response headers arrived
+     */
+    public static void recordResponse(URL url, long latency) {
+        stats(url).recordLatency(latency / 1e9);
+    }
+
+    /**
+     * Record a completed download, which also counts as a success.
+     *
+     * @param bytes    size of the response body
+     * @param duration nanoseconds spent reading the body
+     */
+    public static void recordTransfer(URL url, long bytes, long duration) {
+        Stats stats = stats(url);
+        if (bytes >= MIN_THROUGHPUT_SAMPLE && duration > 0)
+            stats.recordThroughput(bytes / (duration / 1e9));
+        stats.recordResult(false);
+    }
+
+    public static void recordSuccess(URL url) {
+        stats(url).recordResult(false);
+    }
+
+    public static void recordFailure(URL url) {
+        stats(url).recordResult(true);
+    }
+
+    /**
+     * @return the latency expected when connecting to the host of the given URL, in nanoseconds
+     */
+    public static long getExpectedLatency(URL url) {
+        Stats stats = hosts.get(key(url));
+        double latency = stats == null ? DEFAULT_LATENCY : stats.getLatency();
+        return (long) (latency * 1e9);
+    }
+
+    /**
+     * @return expected seconds to download a typical file from the host of the given URL, lower is better
+     */
+    public static double getScore(URL url) {
+        Stats stats = url == null ? null : hosts.get(key(url));
+        return stats == null ? DEFAULT_LATENCY + TYPICAL_SIZE / DEFAULT_THROUGHPUT : stats.getScore();
+    }
+
+    /**
+     * @return the URLs, best host first
+     */
+    public static List<URL> sort(List<URL> urls) {
+        return sort(urls, Function.identity());
+    }
+
+    /**
+     * Order items by the health of their host. The order of items whose hosts perform alike is kept.
+     *
+     * @param items items to be ordered
+     * @param urlOf the URL an item is downloaded from, which may be null if unknown
+     * @return the ordered items, or {@code items} itself if the order does not change
+     */
+    public static <T> List<T> sort(List<T> items, Function<T, URL> urlOf) {
+        if (items.size() < 2)
+            return items;
+
+        List<Ranked<T>> ranked = new ArrayList<>(items.size());
+        boolean sorted = true;
+        for (T item : items) {
+            Ranked<T> r = new Ranked<>(item, (int) Math.floor(Math.log(getScore(urlOf.apply(item))) / SCORE_BUCKET));
+            if (!ranked.isEmpty() && ranked.get(ranked.size() - 1).bucket > r.bucket)
+                sorted = false;
+            ranked.add(r);
+        }
+        if (sorted)
+            return items;
+
+        ranked.sort(Comparator.comparingInt(r -> r.bucket));
+        List<T> result = new ArrayList<>(ranked.size());
+        for (Ranked<T> r : ranked)
+            result.add(r.item);
+        return result;
+    }
+
+    private static final class Ranked<T> {
+        final T item;
+        final int bucket;
+
+        Ranked(T item, int bucket) {
+            this.item = item;
+            this.bucket = bucket;
+        }
+    }
+
+    private static final class Stats {
+        private double latency = Double.NaN;
+        private double throughput = Double.NaN;
+        private double errorRate = 0;
+        private long lastResult = System.nanoTime();
+
+        synchronized void recordLatency(double seconds) {
+            latency = Double.isNaN(latency) ? seconds : latency + ALPHA * (seconds - latency);
+        }
+
+        synchronized void recordThroughput(double bytesPerSecond) {
+            throughput = Double.isNaN(throughput) ? bytesPerSecond : throughput + ALPHA * (bytesPerSecond - throughput);
+        }
+
+        synchronized void recordResult(boolean failed) {
+            long now = System.nanoTime();
+            errorRate = decayedErrorRate(now) * (1 - ERROR_ALPHA) + (failed ? ERROR_ALPHA : 0);
+            lastResult = now;
+        }
+
+        private double decayedErrorRate(long now) {
+            return errorRate * Math.pow(0.5, (double) (now - lastResult) / ERROR_HALF_LIFE);
+        }
+
+        synchronized double getLatency() {
+            return Double.isNaN(latency) ? DEFAULT_LATENCY : latency;
+        }
+
+        synchronized double getScore() {
+            double l = Double.isNaN(latency) ? DEFAULT_LATENCY : latency;
+            double t = Double.isNaN(throughput) ? DEFAULT_THROUGHPUT : throughput;
+            double e = Math.min(decayedErrorRate(System.nanoTime()), MAX_ERROR_RATE);
+            return (l + TYPICAL_SIZE / t) / (1 - e);
+        }
+    }
+}
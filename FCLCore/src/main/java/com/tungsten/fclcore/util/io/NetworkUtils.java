@@ -37,6 +37,8 @@ public final class NetworkUtils {
     public static final String PARAMETER_SEPARATOR = "&";
     public static final String NAME_VALUE_SEPARATOR = "=";
     private static final int TIME_OUT = 8000;
+    // Error and redirect bodies longer than this are not worth reading only to keep the connection alive
+    private static final int MAX_DISCARDED_BODY = 64 * 1024;
 
     private NetworkUtils() {
     }
@@ -170,7 +172,7 @@ public final class NetworkUtils {
             int code = conn.getResponseCode();
             if (code >= 300 && code <= 307 && code != 306 && code != 304) {
                 String newURL = conn.getHeaderField("Location");
-                conn.disconnect();
+                discard(conn);
 
                 if (redirects != null) {
                     redirects.add(newURL);
@@ -252,6 +254,44 @@ public final class NetworkUtils {
         }
     }
 
+    /**
+     * Read and close whatever is left of the response, so that the connection can be reused.
+     * Should be called instead of {@link HttpURLConnection#disconnect()} when the body is not needed,
+     * especially on error responses, whose body is otherwise never read.
+     * The connection is closed instead if the body is too long to be worth reading.
+     *
+     * @param con the connection whose response is not needed
+     */
+    public static void discard(HttpURLConnection con) {
+        try {
+            InputStream stream = con.getErrorStream();
+            if (stream == null) {
+                try {
+                    stream = con.getInputStream();
+                } catch (IOException e) {
+                    stream = con.getErrorStream();
+                }
+            }
+            if (stream == null)
+                return;
+
+            try (InputStream body = stream) {
+                byte[] buffer = new byte[IOUtils.DEFAULT_BUFFER_SIZE];
+                int total = 0;
+                int len;
+                while ((len = body.read(buffer)) != -1) {
+                    total += len;
+                    if (total > MAX_DISCARDED_BODY) {
+                        con.disconnect();
+                        return;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            con.disconnect();
+        }
+    }
+
     public static String detectFileName(URL url) throws IOException {
         HttpURLConnection conn = resolveConnection(createHttpConnection(url));
         int code = conn.getResponseCode();
@@ -294,7 +334,7 @@ public final class NetworkUtils {
         HttpURLConnection con = createHttpConnection(url);
         con = resolveConnection(con);
         int responseCode = con.getResponseCode();
-        con.disconnect();
+        discard(con);
         return responseCode / 100 == 2;
     }
 
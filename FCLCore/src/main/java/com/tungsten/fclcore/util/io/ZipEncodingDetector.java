@@ -0,0 +1,234 @@
+package com.tungsten.fclcore.util.io;
+
+import com.tungsten.fclcore.util.platform.OperatingSystem;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds the charset of entry names in a zip file.
+ *
+ * The result is the first charset, in order of preference, that decodes every entry name
+ * which does not have the UTF-8 flag set. Names are read from the central directory once;
+ * pure ASCII and valid UTF-8 names are recognized without a charset decoder, and the other
+ * candidates are checked together in a single pass that stops as soon as the answer cannot change.
+ */
+final class ZipEncodingDetector {
+
+    private static final String[] CANDIDATES = {
+            "GB18030",
+            "Big5",
+            "Shift_JIS",
+            "EUC-JP",
+            "ISO-2022-JP",
+            "EUC-KR",
+            "ISO-2022-KR",
+            "KOI8-R",
+            "windows-1251",
+            "x-MacCyrillic",
+            "IBM855",
+            "IBM866",
+            "windows-1252",
+            "ISO-8859-1",
+            "ISO-8859-5",
+            "ISO-8859-7",
+            "ISO-8859-8",
+            "UTF-16LE", "UTF-16BE",
+            "UTF-32LE", "UTF-32BE"
+    };
+
+    private ZipEncodingDetector() {
+    }
+
+    static Charset detect(ZipFile zipFile) throws IOException {
+        List<byte[]> names = new ArrayList<>();
+        boolean ascii = true, utf8 = true;
+        Enumeration<ZipArchiveEntry> entries = zipFile.getEntries();
+        while (entries.hasMoreElements()) {
+            ZipArchiveEntry entry = entries.nextElement();
+            if (entry.getGeneralPurposeBit().usesUTF8ForNames()) continue;
+
+            byte[] name = entry.getRawName();
+            if (name.length == 0) continue;
+            names.add(name);
+
+            if (ascii && !isAscii(name)) {
+                ascii = false;
+            }
+            if (!ascii && utf8 && !isUtf8(name)) {
+                utf8 = false;
+            }
+        }
+
+        if (ascii || utf8)
+            return StandardCharsets.UTF_8;
+
+        List<Candidate> candidates = new ArrayList<>();
+        for (Charset charset : getCandidates()) {
+            candidates.add(new Candidate(charset));
+        }
+
+        for (byte[] name : names) {
+            boolean nameIsAscii = isAscii(name);
+            for (Candidate candidate : candidates) {
+                if (candidate.alive && !(nameIsAscii && candidate.asciiCompatible) && !candidate.decodes(name))
+                    candidate.alive = false;
+            }
+
+            Candidate best = firstAlive(candidates);
+            if (best == null)
+                break;
+            // Every remaining name decodes in a charset covering all byte sequences,
+            // and candidates before it are already rejected.
+            if (best.total)
+                return best.charset;
+        }
+
+        Candidate best = firstAlive(candidates);
+        if (best == null)
+            throw new IOException("Cannot find suitable encoding for the zip.");
+        return best.charset;
+    }
+
+    private static Set<Charset> getCandidates() {
+        Set<Charset> result = new LinkedHashSet<>();
+        if (OperatingSystem.NATIVE_CHARSET != StandardCharsets.UTF_8)
+            result.add(OperatingSystem.NATIVE_CHARSET);
+        for (String candidate : CANDIDATES) {
+            try {
+                result.add(Charset.forName(candidate));
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+        // UTF-8 has been checked already
+        result.remove(StandardCharsets.UTF_8);
+        return result;
+    }
+
+    private static Candidate firstAlive(List<Candidate> candidates) {
+        for (Candidate candidate : candidates) {
+            if (candidate.alive)
+                return candidate;
+        }
+        return null;
+    }
+
+    static boolean isAscii(byte[] bytes) {
+        for (byte b : bytes) {
+            if (b < 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Strict UTF-8 validation, rejecting overlong forms, surrogates and code points above U+10FFFF
+     * like the JDK decoder does.
+     */
+    static boolean isUtf8(byte[] bytes) {
+        int i = 0, n = bytes.length;
+        while (i < n) {
+            int c = bytes[i] & 0xFF;
+            if (c < 0x80) {
+                i++;
+                continue;
+            }
+
+            int length, min = 0x80, max = 0xBF;
+            if (c >= 0xC2 && c <= 0xDF) {
+                length = 1;
+            } else if (c >= 0xE0 && c <= 0xEF) {
+                length = 2;
+                if (c == 0xE0) min = 0xA0;
+                else if (c == 0xED) max = 0x9F;
+            } else if (c >= 0xF0 && c <= 0xF4) {
+                length = 3;
+                if (c == 0xF0) min = 0x90;
+                else if (c == 0xF4) max = 0x8F;
+            } else {
+                return false;
+            }
+
+            if (i + length >= n) return false;
+            int second = bytes[i + 1] & 0xFF;
+            if (second < min || second > max) return false;
+            for (int j = 2; j <= length; j++) {
+                int next = bytes[i + j] & 0xFF;
+                if (next < 0x80 || next > 0xBF) return false;
+            }
+            i += length + 1;
+        }
+        return true;
+    }
+
+    private static final class Candidate {
+        final Charset charset;
+        final CharsetDecoder decoder;
+        final boolean asciiCompatible;
+        final boolean total;
+        CharBuffer buffer = CharBuffer.allocate(64);
+        boolean alive = true;
+
+        Candidate(Charset charset) {
+            this.charset = charset;
+            this.decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT);
+
+            byte[] bytes = new byte[256];
+            for (int i = 0; i < bytes.length; i++)
+                bytes[i] = (byte) i;
+
+            String asciiDecoded = decode(charset, bytes, 0x80);
+            boolean compatible = asciiDecoded != null && asciiDecoded.length() == 0x80;
+            for (int i = 0; compatible && i < 0x80; i++) {
+                if (asciiDecoded.charAt(i) != i)
+                    compatible = false;
+            }
+            this.asciiCompatible = compatible;
+
+            // A single byte charset mapping every byte decodes any name.
+            String allDecoded = decode(charset, bytes, bytes.length);
+            this.total = allDecoded != null && allDecoded.length() == bytes.length
+                    && charset.canEncode() && charset.newEncoder().maxBytesPerChar() == 1;
+        }
+
+        private static String decode(Charset charset, byte[] bytes, int length) {
+            try {
+                return charset.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPORT)
+                        .onUnmappableCharacter(CodingErrorAction.REPORT)
+                        .decode(ByteBuffer.wrap(bytes, 0, length))
+                        .toString();
+            } catch (CharacterCodingException e) {
+                return null;
+            }
+        }
+
+        boolean decodes(byte[] name) {
+            decoder.reset();
+            int capacity = (int) (name.length * (double) decoder.maxCharsPerByte()) + 1;
+            if (buffer.capacity() < capacity)
+                buffer = CharBuffer.allocate(capacity);
+            else
+                ((Buffer) buffer).clear(); // cast to prevent NoSuchMethodError on older runtimes, see CompressingUtils#testEncoding
+
+            ByteBuffer bb = ByteBuffer.wrap(name);
+            return decoder.decode(bb, buffer, true).isUnderflow() && decoder.flush(buffer).isUnderflow();
+        }
+    }
+}
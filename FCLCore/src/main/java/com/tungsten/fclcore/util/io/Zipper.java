@@ -17,26 +17,53 @@
  */
 package com.tungsten.fclcore.util.io;
 
+import static com.tungsten.fclcore.util.Lang.threadPool;
+
+import com.tungsten.fclcore.util.DigestUtils;
+import com.tungsten.fclcore.util.Hex;
+import com.tungsten.fclcore.util.function.ExceptionalConsumer;
 import com.tungsten.fclcore.util.function.ExceptionalPredicate;
 
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
-import java.util.zip.ZipOutputStream;
 
 /**
  * Non thread-safe
  */
 public final class Zipper implements Closeable {
 
-    private final ZipOutputStream zos;
+    /**
+     * Files larger than this are compressed on the writing thread instead of being buffered in memory.
+     */
+    private static final long PARALLEL_SIZE_LIMIT = 4L * 1024 * 1024;
+
+    private final ZipArchiveOutputStream zos;
+    private final Set<String> names = new HashSet<>();
     private final byte[] buffer = new byte[IOUtils.DEFAULT_BUFFER_SIZE];
 
     public Zipper(Path zipFile) throws IOException {
@@ -44,7 +71,8 @@ public final class Zipper implements Closeable {
     }
 
     public Zipper(Path zipFile, Charset encoding) throws IOException {
-        this.zos = new ZipOutputStream(Files.newOutputStream(zipFile), encoding);
+        this.zos = new ZipArchiveOutputStream(zipFile);
+        this.zos.setEncoding(encoding.name());
     }
 
     private static String normalize(String path) {
@@ -67,6 +95,29 @@ public final class Zipper implements Closeable {
         zos.close();
     }
 
+    private void putNextEntry(ZipArchiveEntry entry) throws IOException {
+        if (!names.add(entry.getName()))
+            throw new ZipException("duplicate entry: " + entry.getName());
+        zos.putArchiveEntry(entry);
+    }
+
+    private void putDirectoryEntry(String path) throws IOException {
+        try {
+            putNextEntry(new ZipArchiveEntry(path + "/"));
+            zos.closeArchiveEntry();
+        } catch (ZipException ignored) {
+            // Directory already exists
+        }
+    }
+
+    private static ZipArchiveEntry createEntry(String path, BasicFileAttributes attrs) {
+        ZipArchiveEntry entry = new ZipArchiveEntry(attrs.isDirectory() ? path + "/" : path);
+        entry.setCreationTime(attrs.creationTime());
+        entry.setLastAccessTime(attrs.lastAccessTime());
+        entry.setLastModifiedTime(attrs.lastModifiedTime());
+        return entry;
+    }
+
     /**
      * Compress all the files in sourceDir
      *
@@ -86,6 +137,90 @@ public final class Zipper implements Closeable {
      */
     public void putDirectory(Path source, String targetDir, ExceptionalPredicate<String, IOException> filter) throws IOException {
         String root = normalize(targetDir);
+        for (PendingEntry item : walk(source, filter)) {
+            if (item.attrs.isDirectory())
+                putDirectoryEntry(resolve(root, item.relativePath));
+            else
+                putFile(item.file, resolve(root, item.relativePath));
+        }
+    }
+
+    /**
+     * Compress all the files in sourceDir, and compute the digest of every regular file.
+     * Files are read only once, and are deflated concurrently. Entries are written in the same
+     * order as {@link #putDirectory(Path, String, ExceptionalPredicate)}, so the output does not
+     * depend on thread scheduling.
+     *
+     * @param source  the file in basePath to be compressed
+     * @param targetDir the path of the directory in this zip file.
+     * @param filter  returns false if you do not want that file or directory
+     * @param algorithm the digest algorithm, like "SHA-1"
+     * @return hex digests of compressed regular files, keyed by path relative to source, in walking order
+     */
+    public Map<String, String> putDirectory(Path source, String targetDir, ExceptionalPredicate<String, IOException> filter, String algorithm) throws IOException {
+        String root = normalize(targetDir);
+        List<PendingEntry> items = walk(source, filter);
+        Map<String, String> digests = new LinkedHashMap<>();
+
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        int window = Math.min(threads * 2, 16);
+        ExecutorService executor = threadPool("Zipper", true, threads, 10, TimeUnit.SECONDS);
+        ArrayDeque<Future<DeflatedFile>> pending = new ArrayDeque<>();
+        int submitted = 0;
+        try {
+            for (PendingEntry item : items) {
+                while (submitted < items.size() && pending.size() < window) {
+                    PendingEntry next = items.get(submitted++);
+                    if (next.isParallel())
+                        pending.add(executor.submit(() -> deflate(next.file, algorithm)));
+                }
+
+                String path = resolve(root, item.relativePath);
+                if (item.attrs.isDirectory()) {
+                    putDirectoryEntry(path);
+                } else if (item.isParallel()) {
+                    DeflatedFile deflated = pending.remove().get();
+                    ZipArchiveEntry entry = createEntry(path, item.attrs);
+                    entry.setMethod(ZipEntry.DEFLATED);
+                    entry.setCrc(deflated.crc);
+                    entry.setSize(deflated.size);
+                    entry.setCompressedSize(deflated.data.length);
+                    if (!names.add(entry.getName()))
+                        throw new ZipException("duplicate entry: " + entry.getName());
+                    zos.addRawArchiveEntry(entry, new ByteArrayInputStream(deflated.data));
+                    digests.put(item.relativePath, deflated.digest);
+                } else {
+                    MessageDigest digest = DigestUtils.getDigest(algorithm);
+                    try (InputStream input = Files.newInputStream(item.file)) {
+                        putNextEntry(createEntry(path, item.attrs));
+                        int read;
+                        while ((read = input.read(buffer)) >= 0) {
+                            digest.update(buffer, 0, read);
+                            zos.write(buffer, 0, read);
+                        }
+                        zos.closeArchiveEntry();
+                    }
+                    digests.put(item.relativePath, Hex.encodeHex(digest.digest()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            throw new IOException("Unable to compress " + source, cause);
+        } finally {
+            for (Future<DeflatedFile> future : pending)
+                future.cancel(true);
+            executor.shutdownNow();
+        }
+        return digests;
+    }
+
+    private static List<PendingEntry> walk(Path source, ExceptionalPredicate<String, IOException> filter) throws IOException {
+        List<PendingEntry> items = new ArrayList<>();
         Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
             @Override
             public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
@@ -96,7 +231,7 @@ public final class Zipper implements Closeable {
                 if (filter != null && !filter.test(relativePath)) {
                     return FileVisitResult.SKIP_SUBTREE;
                 }
-                putFile(file, resolve(root, relativePath));
+                items.add(new PendingEntry(file, relativePath, attrs));
                 return FileVisitResult.CONTINUE;
             }
 
@@ -106,15 +241,63 @@ public final class Zipper implements Closeable {
                 if (filter != null && !filter.test(relativePath)) {
                     return FileVisitResult.SKIP_SUBTREE;
                 }
-                try {
-                    zos.putNextEntry(new ZipEntry(resolve(root, relativePath) + "/"));
-                    zos.closeEntry();
-                } catch (ZipException ignored) {
-                    // Directory already exists
-                }
+                items.add(new PendingEntry(dir, relativePath, attrs));
                 return FileVisitResult.CONTINUE;
             }
         });
+        return items;
+    }
+
+    private static DeflatedFile deflate(Path file, String algorithm) throws IOException {
+        MessageDigest digest = DigestUtils.getDigest(algorithm);
+        CRC32 crc = new CRC32();
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        long size = 0;
+        try (InputStream input = Files.newInputStream(file);
+             DeflaterOutputStream output = new DeflaterOutputStream(data, deflater, IOUtils.DEFAULT_BUFFER_SIZE)) {
+            byte[] buf = new byte[IOUtils.DEFAULT_BUFFER_SIZE];
+            int read;
+            while ((read = input.read(buf)) >= 0) {
+                digest.update(buf, 0, read);
+                crc.update(buf, 0, read);
+                output.write(buf, 0, read);
+                size += read;
+            }
+        } finally {
+            deflater.end();
+        }
+        return new DeflatedFile(data.toByteArray(), crc.getValue(), size, Hex.encodeHex(digest.digest()));
+    }
+
+    private static final class PendingEntry {
+        final Path file;
+        final String relativePath;
+        final BasicFileAttributes attrs;
+
+        PendingEntry(Path file, String relativePath, BasicFileAttributes attrs) {
+            this.file = file;
+            this.relativePath = relativePath;
+            this.attrs = attrs;
+        }
+
+        boolean isParallel() {
+            return attrs.isRegularFile() && attrs.size() <= PARALLEL_SIZE_LIMIT;
+        }
+    }
+
+    private static final class DeflatedFile {
+        final byte[] data;
+        final long crc;
+        final long size;
+        final String digest;
+
+        DeflatedFile(byte[] data, long crc, long size, String digest) {
+            this.data = data;
+            this.crc = crc;
+            this.size = size;
+            this.digest = digest;
+        }
     }
 
     public void putFile(File file, String path) throws IOException {
@@ -126,31 +309,48 @@ public final class Zipper implements Closeable {
 
         BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
 
-        ZipEntry entry = new ZipEntry(attrs.isDirectory() ? path + "/" : path);
-        entry.setCreationTime(attrs.creationTime());
-        entry.setLastAccessTime(attrs.lastAccessTime());
-        entry.setLastModifiedTime(attrs.lastModifiedTime());
+        ZipArchiveEntry entry = createEntry(path, attrs);
 
         if (attrs.isDirectory()) {
             try {
-                zos.putNextEntry(entry);
-                zos.closeEntry();
+                putNextEntry(entry);
+                zos.closeArchiveEntry();
             } catch (ZipException ignored) {
                 // Directory already exists
             }
         } else {
             try (InputStream input = Files.newInputStream(file)) {
-                zos.putNextEntry(entry);
+                putNextEntry(entry);
                 IOUtils.copyTo(input, zos, buffer);
-                zos.closeEntry();
+                zos.closeArchiveEntry();
             }
         }
     }
 
     public void putStream(InputStream in, String path) throws IOException {
-        zos.putNextEntry(new ZipEntry(normalize(path)));
+        putNextEntry(new ZipArchiveEntry(normalize(path)));
         IOUtils.copyTo(in, zos, buffer);
-        zos.closeEntry();
+        zos.closeArchiveEntry();
+    }
+
+    /**
+     * Add an entry whose content is written by {@code writer}.
+     * Closing the stream passed to the writer only ends the entry, not the archive.
+     */
+    public void putStream(String path, ExceptionalConsumer<OutputStream, IOException> writer) throws IOException {
+        putNextEntry(new ZipArchiveEntry(normalize(path)));
+        writer.accept(new FilterOutputStream(zos) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        });
+        zos.closeArchiveEntry();
     }
 
     public void putTextFile(String text, String path) throws IOException {
@@ -158,8 +358,8 @@ public final class Zipper implements Closeable {
     }
 
     public void putTextFile(String text, Charset encoding, String path) throws IOException {
-        zos.putNextEntry(new ZipEntry(normalize(path)));
+        putNextEntry(new ZipArchiveEntry(normalize(path)));
         zos.write(text.getBytes(encoding));
-        zos.closeEntry();
+        zos.closeArchiveEntry();
     }
 }
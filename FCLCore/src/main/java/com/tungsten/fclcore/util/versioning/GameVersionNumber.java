@@ -32,11 +32,19 @@ import java.util.regex.Pattern;
  */
 public abstract class GameVersionNumber implements Comparable<GameVersionNumber> {
 
+    private static final VersionCache<GameVersionNumber> CACHE = new VersionCache<>(GameVersionNumber::parse);
+
     public static String[] getDefaultGameVersions() {
         return Versions.DEFAULT_GAME_VERSIONS;
     }
 
     public static GameVersionNumber asGameVersion(String version) {
+        Objects.requireNonNull(version);
+        return CACHE.get(version);
+    }
+
+    // Not cached, since known special versions are only complete once Versions is initialized
+    static GameVersionNumber parse(String version) {
         try {
             if (!version.isEmpty()) {
                 char ch = version.charAt(0);
@@ -511,7 +519,7 @@ public abstract class GameVersionNumber implements Comparable<GameVersionNumber>
                     if (line.isEmpty())
                         continue;
 
-                    GameVersionNumber version = GameVersionNumber.asGameVersion(line);
+                    GameVersionNumber version = GameVersionNumber.parse(line);
 
                     if (currentRelease == null)
                         currentRelease = (Release) version;
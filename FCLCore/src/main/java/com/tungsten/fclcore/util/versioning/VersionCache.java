@@ -0,0 +1,53 @@
+package com.tungsten.fclcore.util.versioning;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Parsed versions by their string, so that sorting or filtering long version lists
+ * parses each version once instead of on every comparison.
+ *
+ * Parsed versions are immutable and may be shared. Version strings seen by the launcher are few,
+ * but they may come from remote lists, so the cache is bounded. Versions are added to the young generation,
+ * and once it holds {@value #MAX_SIZE} versions, it replaces the old one. Versions found in the old generation
+ * move back to the young one, so those in use are kept, and a list of up to {@value #MAX_SIZE} versions
+ * is parsed only once. Looking up is lock-free; the lock is only held to replace the generations.
+ */
+final class VersionCache<V> {
+    private static final int MAX_SIZE = 8192;
+
+    private final Function<String, V> parser;
+    private volatile ConcurrentHashMap<String, V> young = new ConcurrentHashMap<>();
+    private volatile ConcurrentHashMap<String, V> old = new ConcurrentHashMap<>();
+
+    VersionCache(Function<String, V> parser) {
+        this.parser = parser;
+    }
+
+    V get(String version) {
+        V parsed = young.get(version);
+        if (parsed != null)
+            return parsed;
+
+        parsed = old.get(version);
+        if (parsed == null)
+            parsed = parser.apply(version);
+        return add(version, parsed);
+    }
+
+    private V add(String version, V parsed) {
+        ConcurrentHashMap<String, V> generation = young;
+        if (generation.size() >= MAX_SIZE) {
+            synchronized (this) {
+                if (young == generation) {
+                    // The old generation is replaced first, so that its versions stay visible meanwhile
+                    old = generation;
+                    young = new ConcurrentHashMap<>();
+                }
+                generation = young;
+            }
+        }
+        V previous = generation.putIfAbsent(version, parsed);
+        return previous != null ? previous : parsed;
+    }
+}
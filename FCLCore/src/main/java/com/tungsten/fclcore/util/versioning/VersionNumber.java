@@ -33,11 +33,13 @@ import java.util.Objects;
  */
 public final class VersionNumber implements Comparable<VersionNumber> {
 
+    private static final VersionCache<VersionNumber> CACHE = new VersionCache<>(VersionNumber::new);
+
     public static final VersionNumber ZERO = asVersion("0");
 
     public static VersionNumber asVersion(String version) {
         Objects.requireNonNull(version);
-        return new VersionNumber(version);
+        return CACHE.get(version);
     }
 
     public static int compare(String version1, String version2) {
@@ -45,7 +47,7 @@ public final class VersionNumber implements Comparable<VersionNumber> {
     }
 
     public static String normalize(String str) {
-        return new VersionNumber(str).getCanonical();
+        return asVersion(str).getCanonical();
     }
 
     public static boolean isIntVersionNumber(String version) {
@@ -368,6 +370,8 @@ public final class VersionNumber implements Comparable<VersionNumber> {
     private final String value;
     private final ListItem items;
     private final String canonical;
+    // Items of versions like 1.20.1, which consist of numbers only, so they compare without walking the items
+    private final long[] numbers;
 
     private VersionNumber(String version) {
         this.value = version;
@@ -434,6 +438,7 @@ public final class VersionNumber implements Comparable<VersionNumber> {
         }
 
         this.canonical = items.toString();
+        this.numbers = toNumbers(items);
     }
 
     // For simple version
@@ -441,6 +446,30 @@ public final class VersionNumber implements Comparable<VersionNumber> {
         this.value = version;
         this.items = items;
         this.canonical = version;
+        this.numbers = toNumbers(items);
+    }
+
+    private static long[] toNumbers(ListItem items) {
+        long[] numbers = new long[items.size()];
+        for (int i = 0; i < numbers.length; i++) {
+            Item item = items.get(i);
+            if (!(item instanceof LongItem))
+                return null;
+            numbers[i] = ((LongItem) item).value;
+        }
+        return numbers;
+    }
+
+    private static int compareNumbers(long[] left, long[] right) {
+        int length = Math.max(left.length, right.length);
+        for (int i = 0; i < length; i++) {
+            // Missing items count as 0, 1.0 == 1
+            long l = i < left.length ? left[i] : 0L;
+            long r = i < right.length ? right[i] : 0L;
+            if (l != r)
+                return Long.compare(l, r);
+        }
+        return 0;
     }
 
     private static Item parseItem(String buf) {
@@ -477,6 +506,8 @@ public final class VersionNumber implements Comparable<VersionNumber> {
 
     @Override
     public int compareTo(VersionNumber o) {
+        if (this.numbers != null && o.numbers != null)
+            return compareNumbers(this.numbers, o.numbers);
         return items.compareTo(o.items);
     }
 